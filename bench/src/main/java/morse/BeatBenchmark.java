@@ -0,0 +1,53 @@
+package morse;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One step of Beat, reading, translating and looking up one character
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeatBenchmark {
+
+    private Prefetcher prefetcher;
+    private Beat beat;
+
+    @Setup
+    public void setup() {
+        Session session = new Session(Codebook.getDefault(), new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES));
+        Source source = new Source(new Boolean[]{true, true, true});
+        session.setSource(source);
+        session.setSound(new Sound(11025, Sound.DEFAULT_FREQUENCY));
+        session.setSpeed(25);
+        prefetcher = new Prefetcher(source, session.getCodebook(), Session.DEFAULT_LOOKAHEAD);
+        prefetcher.start(Thread::new);
+        beat = new Beat(session, prefetcher, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        prefetcher.close();
+    }
+
+    @Benchmark
+    public byte[] next() {
+        return beat.next();
+    }
+}
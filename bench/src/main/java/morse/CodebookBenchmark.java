@@ -0,0 +1,42 @@
+package morse;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Translation of characters into morse code
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodebookBenchmark {
+
+    private static final String TEXT = "THE QUICK BROWN FOX JUMPS OVER THE LAZY DOG 0123456789 /?=";
+
+    private final Codebook codebook = Codebook.getDefault();
+    private int i;
+
+    @Benchmark
+    public long encode() {
+        i = (i + 1) % TEXT.length();
+        return codebook.encode(TEXT.charAt(i));
+    }
+
+    @Benchmark
+    public long encodeUnknown() {
+        return codebook.encode('#');
+    }
+}
@@ -0,0 +1,64 @@
+package morse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of one minute of rendered audio, the score divided into 60000 ms
+ * is how many times faster than real time the decoder runs
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+    @Param({"8000", "48000"})
+    public int sampleRate;
+
+    @Param({"20"})
+    public int wpm;
+
+    private Codebook codebook;
+    private byte[] pcm;
+
+    @Setup
+    public void setup() throws Exception {
+        codebook = Codebook.getDefault();
+        Sound sound = new Sound(sampleRate, Sound.DEFAULT_FREQUENCY);
+        WaveformCache cache = new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES);
+        Random random = new Random(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        for (int i = 0; out.size() < sampleRate * 2 * 60; i++) {
+            char c = (i % 6 == 5) ? ' ' : alphabet.charAt(random.nextInt(alphabet.length()));
+            out.write(cache.get(sound, wpm, codebook.encode(c)));
+        }
+        pcm = out.toByteArray();
+    }
+
+    @Benchmark
+    public int decode() {
+        int[] count = new int[1];
+        Decoder decoder = new Decoder(codebook, sampleRate, Sound.DEFAULT_FREQUENCY, (int c) -> count[0]++);
+        decoder.process(pcm, 0, pcm.length);
+        decoder.flush();
+        return count[0];
+    }
+}
@@ -0,0 +1,86 @@
+package morse;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Live grading while the user copies. A row costs about one step per 64
+ * played characters, so lengths stop at what is copied in a long session.
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiveCheckerBenchmark {
+
+    /**
+     * Length of the transcript in characters
+     */
+    @Param({"100", "10000", "100000"})
+    public int length;
+
+    /**
+     * Probability of a mistake in user copy
+     */
+    @Param({"0.05"})
+    public double errorRate;
+
+    private Transcript transcript;
+    private String user;
+    private LiveChecker live;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        StringBuilder copied = new StringBuilder(length);
+        transcript = new Transcript();
+        for (int i = 0; i < length; i++) {
+            char c = (i % 6 == 5) ? ' ' : alphabet.charAt(random.nextInt(alphabet.length()));
+            transcript.appendCodePoint(c);
+            if (random.nextDouble() >= errorRate) {
+                copied.append(c);
+            } else {
+                switch (random.nextInt(3)) {
+                    case 0: // substitution
+                        copied.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                        break;
+                    case 1: // insertion
+                        copied.append(c).append(alphabet.charAt(random.nextInt(alphabet.length())));
+                        break;
+                    default: // deletion
+                }
+            }
+        }
+        user = copied.toString();
+        live = new LiveChecker();
+        live.played(transcript);
+        live.insert(0, user);
+    }
+
+    /**
+     * One character typed and deleted at the end of user copy
+     */
+    @Benchmark
+    public double keystroke() {
+        live.insert(user.length(), "X");
+        live.remove(user.length(), 1);
+        return live.getAccuracy();
+    }
+}
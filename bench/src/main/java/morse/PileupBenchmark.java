@@ -0,0 +1,49 @@
+package morse;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mixing of one block of a pileup, real time allows Pileup.BLOCK_MILLIS per
+ * block
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PileupBenchmark {
+
+    @Param({"1", "20", "50"})
+    public int stations;
+
+    @Param({"48000"})
+    public int sampleRate;
+
+    private Pileup pileup;
+
+    @Setup
+    public void setup() {
+        pileup = new Pileup(new Sound(sampleRate, Sound.DEFAULT_FREQUENCY), Codebook.getDefault(), 0);
+        pileup.addRandom(stations, new SplittableRandom(1));
+    }
+
+    @Benchmark
+    public byte[] mix() {
+        return pileup.next();
+    }
+}
@@ -0,0 +1,95 @@
+package morse;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading characters from Source, generated, by the Koch method and from a file
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceBenchmark {
+
+    /**
+     * Size of the source file in characters
+     */
+    @Param({"65536"})
+    public int fileSize;
+
+    private Source generated;
+    private Source koch;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        generated = new Source(new Boolean[]{true, true, true});
+        koch = new Source(new Koch(Koch.ORDER.length()), 1);
+
+        file = File.createTempFile("morse-bench", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz 0123456789 .,?=/";
+        try (Writer w = new FileWriter(file)) {
+            for (int i = 0; i < fileSize; i++) {
+                w.write(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int generate() throws IOException {
+        return generated.read();
+    }
+
+    /**
+     * Weighted draw of all Koch characters from the alias table
+     */
+    @Benchmark
+    public int koch() throws IOException {
+        return koch.read();
+    }
+
+    /**
+     * Reads the whole file, time per character is this divided by fileSize
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int readFile() throws IOException {
+        int sum = 0;
+        Source source = new Source(file);
+        int x;
+        while ((x = source.read()) != -1) {
+            sum += x;
+        }
+        source.close();
+        return sum;
+    }
+}
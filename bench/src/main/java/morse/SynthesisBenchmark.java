@@ -0,0 +1,59 @@
+package morse;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of a character waveform for different tone settings
+ *
+ * @author Matus Namesny
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SynthesisBenchmark {
+
+    @Param({"8000", "11025", "22050", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"441", "600", "1000"})
+    public double frequency;
+
+    @Param({"20"})
+    public int wpm;
+
+    private Sound sound;
+    private long code;
+    private WaveformCache cache;
+
+    @Setup
+    public void setup() {
+        sound = new Sound(sampleRate, frequency);
+        code = Codebook.getDefault().encode('0'); // longest of letters and digits
+        cache = new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES);
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return WaveformCache.render(sound, wpm, code);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public byte[] cached() {
+        return cache.get(sound, wpm, code);
+    }
+}
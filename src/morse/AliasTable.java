@@ -0,0 +1,91 @@
+package morse;
+
+import java.util.SplittableRandom;
+
+/**
+ * AliasTable draws characters with given weights in constant time by
+ * Vose's alias method: one random column and one random comparison per
+ * draw. Building the table takes time linear in the number of characters.
+ * The table is immutable, so it can be replaced while another thread draws
+ * from the old one.
+ *
+ * @author Matus Namesny
+ */
+public class AliasTable {
+
+    private final int[] chars;
+    private final double[] prob; // probability of keeping the column
+    private final int[] alias; // column taken otherwise
+
+    /**
+     * @param chars = code points of characters
+     * @param weights = positive weights of the characters, need not sum to 1
+     * @throws IllegalArgumentException if there are no characters or a
+     * weight is not positive
+     */
+    public AliasTable(int[] chars, double[] weights) {
+        int n = chars.length;
+        if (n == 0 || weights.length != n) {
+            throw new IllegalArgumentException("Characters and weights do not match");
+        }
+        double sum = 0;
+        for (double w : weights) {
+            if (!(w > 0)) {
+                throw new IllegalArgumentException("Weight is not positive: " + w);
+            }
+            sum += w;
+        }
+        this.chars = chars.clone();
+        prob = new double[n];
+        alias = new int[n];
+
+        // columns below and above the average, kept as stacks in one array
+        double[] scaled = new double[n];
+        int[] work = new int[n];
+        int small = 0;
+        int large = n;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                work[small++] = i;
+            } else {
+                work[--large] = i;
+            }
+        }
+        while (small > 0 && large < n) {
+            int s = work[--small];
+            int l = work[large++];
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] -= 1 - scaled[s];
+            if (scaled[l] < 1) {
+                work[small++] = l;
+            } else {
+                work[--large] = l;
+            }
+        }
+        // what is left is 1 up to rounding errors
+        while (large < n) {
+            prob[work[large++]] = 1;
+        }
+        while (small > 0) {
+            prob[work[--small]] = 1;
+        }
+    }
+
+    /**
+     * @param random = generator of the calling thread
+     * @return code point of a random character
+     */
+    public int draw(SplittableRandom random) {
+        int i = random.nextInt(chars.length);
+        return random.nextDouble() < prob[i] ? chars[i] : chars[alias[i]];
+    }
+
+    /**
+     * @return number of characters
+     */
+    public int size() {
+        return chars.length;
+    }
+}
@@ -0,0 +1,372 @@
+package morse;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * AudioEngine streams rendered characters to a SourceDataLine from its own
+ * thread. Characters are rendered in whole frames (see WaveformCache), so
+ * element edges land on exact sample boundaries whatever the GUI is doing.
+ *
+ * The engine is meant to live as long as the program. open() starts the
+ * audio thread and opens the line in background, so the first start() does
+ * not wait for the sound system. The line stays open between sessions and
+ * is reopened only when the audio format changes. close() releases it.
+ *
+ * @author Matus Namesny
+ */
+public class AudioEngine implements Output, Runnable {
+
+    /**
+     * Default size of the line buffer in milliseconds
+     */
+    public static final int DEFAULT_BUFFER_MILLIS = 100;
+
+    /**
+     * Feed supplies rendered characters one at a time
+     */
+    public interface Feed {
+
+        /**
+         * @return PCM of next character in the format of the engine's Sound,
+         * null if there is nothing more to play
+         */
+        byte[] next();
+
+        /**
+         * Called from the audio thread after playing has ended
+         */
+        default void done() {
+        }
+    }
+
+    private final int bufferMillis;
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private Sound sound;
+    private Feed feed; // feed being played, null when idle
+    private volatile boolean paused;
+    private boolean closed;
+    private Thread thread;
+
+    private volatile JitterMeter.Histogram jitter; // set by the session, read by the audio thread
+    private volatile SourceDataLine line;
+    private AudioFormat lineFormat; // format of the open line, audio thread only
+    private Sound opened; // sound the line was last opened for, audio thread only
+
+    private volatile boolean running;
+    private volatile long underruns;
+    private volatile long startNanos; // when start() was called
+    private volatile long firstToneNanos; // from start() to the first PCM in the line
+
+    /**
+     * @param sound = tone settings
+     * @param bufferMillis = size of line buffer in milliseconds, bigger buffer
+     * survives longer stalls but adds latency
+     */
+    public AudioEngine(Sound sound, int bufferMillis) {
+        this.sound = sound;
+        this.bufferMillis = bufferMillis;
+    }
+
+    /**
+     * Starts the audio thread, which opens the line and waits for a feed
+     */
+    public void open() {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Audio engine is closed");
+            }
+            if (thread == null) {
+                thread = new Thread(this, "morse-audio");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Changes tone settings for the next start(), the line is reopened if
+     * the audio format is different
+     *
+     * @param sound = tone settings
+     */
+    public void setSound(Sound sound) {
+        synchronized (lock) {
+            this.sound = sound;
+            lock.notifyAll(); // an idle thread reopens the line now
+        }
+    }
+
+    /**
+     * Starts playing on the audio thread, opens the engine if needed
+     *
+     * @param feed = source of rendered characters
+     * @throws IllegalStateException if a feed is already playing
+     */
+    @Override
+    public void start(Feed feed) {
+        open();
+        synchronized (lock) {
+            if (this.feed != null) {
+                throw new IllegalStateException("Audio engine is already playing");
+            }
+            startNanos = System.nanoTime();
+            firstToneNanos = 0;
+            underruns = 0;
+            paused = false;
+            running = true;
+            this.feed = feed;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void setJitter(JitterMeter.Histogram jitter) {
+        this.jitter = jitter;
+    }
+
+    /**
+     * Stops playing immediately, data remaining in the line buffer is dropped.
+     * The line stays open for the next start().
+     */
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            paused = false;
+            lock.notifyAll();
+        }
+        SourceDataLine l = line;
+        if (l != null) {
+            // a stopped or flushed line releases the blocked write()
+            l.stop();
+            l.flush();
+        }
+    }
+
+    /**
+     * Pauses playing, the rest of the line buffer is played after resume()
+     */
+    @Override
+    public void pause() {
+        synchronized (lock) {
+            paused = true;
+        }
+        SourceDataLine l = line;
+        if (l != null) {
+            l.stop(); // a blocked write() waits until resume
+        }
+    }
+
+    /**
+     * Resumes paused playing
+     */
+    @Override
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+        SourceDataLine l = line;
+        if (l != null && running) {
+            l.start();
+        }
+    }
+
+    /**
+     * Stops playing, closes the line and ends the audio thread. Called from
+     * the audio thread itself, e.g. from Feed.done(), it does not wait.
+     */
+    public void close() {
+        Thread t;
+        synchronized (lock) {
+            closed = true;
+            t = thread;
+        }
+        stop();
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Audio thread, keeps the line open and plays feeds one after another
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Feed f;
+                Sound s;
+                synchronized (lock) {
+                    while (!closed && feed == null && sound == opened) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        break;
+                    }
+                    f = feed;
+                    s = sound;
+                }
+                opened = s;
+                openLine(s);
+                if (f != null) {
+                    play(f, s);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // closed
+        } finally {
+            SourceDataLine l = line;
+            line = null;
+            if (l != null) {
+                l.close();
+            }
+            Feed f;
+            synchronized (lock) {
+                f = feed;
+                feed = null;
+                closed = true;
+            }
+            if (f != null) {
+                f.done();
+            }
+        }
+    }
+
+    /**
+     * Opens the line unless it is open in the format of the sound
+     */
+    private void openLine(Sound s) {
+        AudioFormat format = s.getFormat();
+        if (line != null && format.matches(lineFormat)) {
+            return;
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+        try {
+            SourceDataLine l = AudioSystem.getSourceDataLine(format);
+            int bufferBytes = (s.getSampleRate() * bufferMillis / 1000) * format.getFrameSize();
+            l.open(format, bufferBytes);
+            lineFormat = format;
+            line = l;
+            Metrics.getDefault().lineOpened();
+        } catch (LineUnavailableException | IllegalArgumentException ex) {
+            Logger.getLogger(AudioEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Playing loop of one feed, one character is written per iteration
+     */
+    private void play(Feed f, Sound s) throws InterruptedException {
+        SourceDataLine l = line;
+        boolean written = false;
+        long origin = 0; // time when frame 0 played, 0 until known
+
+        try {
+            if (l == null) {
+                return; // no sound card, the session ends at once
+            }
+            l.start();
+
+            while (running) {
+                synchronized (lock) {
+                    while (paused && running) {
+                        lock.wait();
+                        origin = 0; // the pause is not a timing error
+                    }
+                }
+                byte[] pcm = f.next();
+                if (pcm == null) {
+                    l.drain();
+                    break;
+                }
+
+                if (written && l.available() >= l.getBufferSize()) {
+                    // line played everything it had before we delivered more
+                    underruns++;
+                }
+                l.write(pcm, 0, pcm.length);
+                if (!written) {
+                    firstToneNanos = System.nanoTime() - startNanos;
+                    Metrics.getDefault().firstTone(firstToneNanos);
+                }
+                written = true;
+
+                JitterMeter.Histogram h = jitter;
+                if (h != null && !paused) {
+                    // the line has played frame `position` now, compare
+                    // with when it should be played by the system clock
+                    long position = l.getLongFramePosition();
+                    if (position > 0) {
+                        long now = System.nanoTime();
+                        long due = position * 1000000000L / s.getSampleRate();
+                        if (origin == 0) {
+                            origin = now - due;
+                        } else {
+                            h.record(now - origin - due);
+                        }
+                    }
+                }
+            }
+        } finally {
+            running = false;
+            if (l != null) {
+                l.stop();
+                l.flush();
+            }
+            synchronized (lock) {
+                feed = null;
+                paused = false;
+            }
+            if (underruns > 0) {
+                Logger.getLogger(AudioEngine.class.getName()).log(Level.WARNING, "{0} buffer underruns", underruns);
+            }
+            f.done();
+        }
+    }
+
+    /**
+     * @return milliseconds from the last start() until its first character
+     * was in the line, 0 before that
+     */
+    public double getFirstToneMillis() {
+        return firstToneNanos / 1e6;
+    }
+
+    /**
+     * @return true while the engine is playing
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of times the line ran out of data
+     */
+    @Override
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * @return the bufferMillis
+     */
+    public int getBufferMillis() {
+        return bufferMillis;
+    }
+}
@@ -0,0 +1,318 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * BatchDecoder decodes many recordings on all cores of a fork/join pool.
+ * Every file is one task, files longer than 2 chunks are split into chunks
+ * of CHUNK_SECONDS which are decoded in parallel.
+ *
+ * A chunk is decoded together with MARGIN_SECONDS of audio before and after
+ * it. The margin before lets the Decoder settle its levels and timing, the
+ * margin after lets characters started in the chunk end. A chunk keeps only
+ * the characters which start inside it (Decoder.getPosition()), so the
+ * chunks of a file join into one text without duplicates. The pitch of a
+ * file, if not given, is searched once at its start and shared by all its
+ * chunks.
+ *
+ * @author Matus Namesny
+ */
+public class BatchDecoder {
+
+    /**
+     * Length of a chunk of a long file in seconds
+     */
+    public static final int CHUNK_SECONDS = 120;
+
+    /**
+     * Audio decoded on both sides of a chunk in seconds, at 5 wpm the
+     * decoder learns the timing in about half of it
+     */
+    public static final int MARGIN_SECONDS = 10;
+
+    private final Codebook codebook;
+    private final double frequency;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param codebook = codebook of the senders
+     * @param frequency = pitch of the tone in Hz, 0 to search for it in every
+     * file
+     * @param pool = pool which decodes the files
+     */
+    public BatchDecoder(Codebook codebook, double frequency, ForkJoinPool pool) {
+        this.codebook = codebook;
+        this.frequency = frequency;
+        this.pool = pool;
+    }
+
+    /**
+     * Decodes files, waits until all are done
+     *
+     * @param files = audio files
+     * @return results in the order of the files
+     */
+    public List<Result> decode(List<File> files) {
+        return pool.invoke(new RecursiveTask<List<Result>>() {
+            @Override
+            protected List<Result> compute() {
+                List<FileTask> tasks = new ArrayList<>();
+                for (File file : files) {
+                    tasks.add(new FileTask(file));
+                }
+                List<Result> results = new ArrayList<>();
+                for (FileTask task : ForkJoinTask.invokeAll(tasks)) {
+                    results.add(task.join());
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * Lists audio files in directories and their subdirectories
+     *
+     * @param dirs = directories or files
+     * @return WAV, AIFF and AU files sorted by path
+     * @throws IOException
+     */
+    public static List<File> list(File... dirs) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (File dir : dirs) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                files.addAll(paths.filter(Files::isRegularFile)
+                        .filter((Path p) -> p.getFileName().toString().toLowerCase().matches(".*\\.(wav|aiff?|au)"))
+                        .sorted()
+                        .map(Path::toFile)
+                        .collect(Collectors.toList()));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Decoded text of a file
+     */
+    public static class Result {
+
+        private final File file;
+        private final String text;
+        private final long frames;
+        private final int sampleRate;
+        private final String error;
+
+        private Result(File file, String text, long frames, int sampleRate, String error) {
+            this.file = file;
+            this.text = text;
+            this.frames = frames;
+            this.sampleRate = sampleRate;
+            this.error = error;
+        }
+
+        /**
+         * @return the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return decoded text, empty if the file cannot be read
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return length of the audio in seconds
+         */
+        public double getSeconds() {
+            return sampleRate == 0 ? 0 : frames / (double) sampleRate;
+        }
+
+        /**
+         * @return why the file cannot be read, null if it was decoded
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Decodes one file, splits it if it is long
+     */
+    private class FileTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+
+        FileTask(File file) {
+            this.file = file;
+        }
+
+        @Override
+        protected Result compute() {
+            try {
+                AudioFormat format;
+                long length;
+                double pitch = frequency;
+                try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+                    format = in.getFormat();
+                    length = in.getFrameLength();
+                    if (length == AudioSystem.NOT_SPECIFIED) {
+                        throw new UnsupportedAudioFileException("Unknown length");
+                    }
+                    if (pitch <= 0) {
+                        pitch = search(in, format);
+                    }
+                }
+                int rate = (int) format.getSampleRate();
+                long chunk = (long) CHUNK_SECONDS * rate;
+                List<ChunkTask> chunks = new ArrayList<>();
+                long from = 0;
+                do {
+                    long to = length - from < 2 * chunk ? length : from + chunk; // no short last chunk
+                    chunks.add(new ChunkTask(file, pitch, from, to, length));
+                    from = to;
+                } while (from < length);
+                StringBuilder text = new StringBuilder();
+                for (ChunkTask task : ForkJoinTask.invokeAll(chunks)) {
+                    String part = task.join();
+                    if (text.length() > 0 && text.charAt(text.length() - 1) == ' ' && part.startsWith(" ")) {
+                        part = part.substring(1); // space seen by both chunks at their border
+                    }
+                    text.append(part);
+                }
+                return new Result(file, text.toString().trim(), length, rate, null);
+            } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException ex) {
+                Logger.getLogger(BatchDecoder.class.getName()).log(Level.WARNING, "Cannot decode " + file, ex);
+                return new Result(file, "", 0, 0, ex.toString());
+            }
+        }
+
+        /**
+         * Searches for the pitch at the start of the file
+         */
+        private double search(AudioInputStream in, AudioFormat format) throws IOException {
+            long frames = (long) format.getSampleRate() * Decoder.SCAN_MILLIS / 1000;
+            Decoder decoder = new Decoder(codebook, (int) format.getSampleRate(), 0, (int c) -> {
+            });
+            decoder.process(new AudioInputStream(in, format, frames));
+            decoder.flush();
+            return decoder.getFrequency();
+        }
+    }
+
+    /**
+     * Decodes characters starting in a part of a file
+     */
+    private class ChunkTask extends RecursiveTask<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final double pitch;
+        private final long from;
+        private final long to;
+        private final long length;
+
+        ChunkTask(File file, double pitch, long from, long to, long length) {
+            this.file = file;
+            this.pitch = pitch;
+            this.from = from;
+            this.to = to;
+            this.length = length;
+        }
+
+        @Override
+        protected String compute() {
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+                AudioFormat format = in.getFormat();
+                long margin = (long) MARGIN_SECONDS * (int) format.getSampleRate();
+                long first = Math.max(0, from - margin);
+                long last = Math.min(length, to + margin);
+                long skip = first * format.getFrameSize();
+                while (skip > 0) {
+                    long skipped = in.skip(skip);
+                    if (skipped <= 0) {
+                        throw new IOException("Cannot skip to frame " + first);
+                    }
+                    skip -= skipped;
+                }
+                StringBuilder text = new StringBuilder();
+                Decoder[] decoder = new Decoder[1];
+                decoder[0] = new Decoder(codebook, (int) format.getSampleRate(), pitch, (int c) -> {
+                    long position = first + decoder[0].getPosition();
+                    if (position >= from && position < to) {
+                        text.appendCodePoint(c);
+                    }
+                });
+                decoder[0].process(new AudioInputStream(in, format, last - first));
+                decoder[0].flush();
+                return text.toString();
+            } catch (IOException | UnsupportedAudioFileException ex) {
+                Logger.getLogger(BatchDecoder.class.getName()).log(Level.WARNING, "Cannot decode " + file + " from frame " + from, ex);
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Decodes directories of recordings to standard output, every file as
+     * its name followed by its text
+     *
+     * @param args = directories or files, optionally -f pitch in Hz and -t
+     * number of threads before them
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        double frequency = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> dirs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-f") && i + 1 < args.length) {
+                frequency = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                dirs.add(new File(args[i]));
+            }
+        }
+        if (dirs.isEmpty()) {
+            System.err.println("Usage: morse.BatchDecoder [-f pitch in Hz] [-t threads] directory...");
+            System.exit(2);
+        }
+        List<File> files = list(dirs.toArray(new File[0]));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<Result> results = new BatchDecoder(Codebook.getDefault(), frequency, pool).decode(files);
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        double seconds = 0;
+        for (Result result : results) {
+            System.out.println("== " + result.getFile());
+            System.out.println(result.getError() == null ? result.getText() : "! " + result.getError());
+            seconds += result.getSeconds();
+        }
+        Logger.getLogger(BatchDecoder.class.getName()).log(Level.INFO, "Decoded {0} files, {1} s of audio in {2} ms on {3} threads, {4} s of audio per second",
+                new Object[]{files.size(), Math.round(seconds), nanos / 1000000, threads, Math.round(seconds * 1e9 / Math.max(1, nanos))});
+    }
+}
@@ -0,0 +1,94 @@
+package morse;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Class Beat takes encoded characters from Prefetcher and hands their
+ * rendered waveforms to AudioEngine
+ *
+ * @author Matus Namesny
+ */
+class Beat implements AudioEngine.Feed {
+
+    private final Session session;
+    private final Prefetcher input;
+
+    private final boolean groups; // True if characters are played in groups of 5
+
+    private int n; // number of played characters in a group of 5
+    private boolean gap; // true if a gap between groups is to be played next
+    private boolean first; // true until the first character is played
+
+    /**
+     * Initializations of variables
+     *
+     * @param session = session which is played
+     * @param input = encoded characters to play
+     * @param groups = True if characters are played in groups of 5
+     */
+    Beat(Session session, Prefetcher input, boolean groups) {
+        this.session = session;
+        this.input = input;
+        this.groups = groups;
+        n = 0;
+        gap = true; // short silence before the first character
+        first = true;
+    }
+
+    /**
+     * Takes next character from the queue and returns its waveform. Called
+     * from the audio thread once per character.
+     *
+     * @return PCM of next character, null at the end
+     */
+    @Override
+    public byte[] next() {
+
+        if (gap) {
+            // space is as long as the gap between groups
+            gap = false;
+            if (!first) {
+                session.played(' ');
+            }
+            return session.getCache().get(session.getSound(), session.getSpeed(), Codebook.SPACE);
+        }
+
+        if (n == 0 && session.isTimeUp()) {
+            return null; // the last group is complete
+        }
+
+        int x = input.poll();
+        if (x == Prefetcher.END) {
+            return null;
+        }
+        if (x == Prefetcher.EMPTY) {
+            // the reader is late, wait a unit rather than block the line
+            return session.getCache().get(session.getSound(), session.getSpeed(), Codebook.PAUSE);
+        }
+
+        n = (n + 1) % 5; 
+
+        first = false;
+        session.played(x);
+
+        if ((n == 0) && groups) {
+            gap = true;
+        }
+        return session.getCache().get(session.getSound(), session.getSpeed(), input.getCode());
+
+    }
+
+    /**
+     * Playing has ended
+     */
+    @Override
+    public void done() {
+        input.close();
+        Metrics.getDefault().stalled(input.getStalls());
+        if (input.getStalls() > 0) {
+            Logger.getLogger(Beat.class.getName()).log(Level.WARNING, "{0} characters were not read in time", input.getStalls());
+        }
+        session.finished();
+    }
+}
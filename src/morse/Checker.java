@@ -0,0 +1,452 @@
+package morse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks user output against the played characters.
+ *
+ * The two texts are aligned by edit distance, so a dropped or an extra
+ * character counts as one mistake instead of shifting everything after it.
+ * A full table of edit distance is quadratic, so the alignment is anchored
+ * first: runs of ANCHOR characters which appear exactly once in both texts
+ * are matched in the order of both texts (longest increasing subsequence),
+ * and only the parts between anchors are aligned by dynamic programming.
+ * With a few percent of mistakes the parts are short and time is about
+ * linear. A part is aligned optimally if its table has at most MAX_CELLS
+ * cells, a larger one (the user wrote almost nothing that was played) in a
+ * band of BAND characters around its diagonal.
+ *
+ * Case does not matter and every run of white space counts as one space.
+ *
+ * @author Matus Namesny
+ */
+public class Checker {
+
+    /**
+     * Length of a run of characters which anchors the alignment
+     */
+    public static final int ANCHOR = 12;
+
+    /**
+     * Largest table of a part between anchors which is aligned optimally
+     */
+    public static final int MAX_CELLS = 1 << 22;
+
+    /**
+     * Half width of the band of a larger part in characters
+     */
+    public static final int BAND = 32;
+
+    /**
+     * Character shown in place of a missing one
+     */
+    public static final char MISSING = '_';
+
+    private static final int INF = Integer.MAX_VALUE / 2;
+    private static final int DIAG = 0; // match or substitution
+    private static final int UP = 1; // played character is missing in user output
+    private static final int LEFT = 2; // extra character in user output
+    private static final long BASE = 0x100000001B3L; // multiplier of the rolling hash
+
+    /**
+     * Aligns user output with the played characters
+     *
+     * @param played = transcript of played characters
+     * @param userString = user output
+     * @return mistakes and statistics
+     */
+    public static Result check(CharSequence played, CharSequence userString) {
+        long start = System.nanoTime();
+        char[] p = normalize(played).toCharArray();
+        char[] u = normalize(userString).toCharArray();
+        List<Mistake> mistakes = new ArrayList<>();
+        int[] runs = anchors(p, u);
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < runs.length; k += 3) {
+            align(p, i, runs[k], u, j, runs[k + 1], mistakes);
+            i = runs[k] + runs[k + 2];
+            j = runs[k + 1] + runs[k + 2];
+        }
+        align(p, i, p.length, u, j, u.length, mistakes);
+        long nanos = System.nanoTime() - start;
+        Metrics.getDefault().graded(nanos);
+        return new Result(p.length, mistakes);
+    }
+
+    /**
+     * Finds runs of characters which are the same in both texts. A run
+     * starts with ANCHOR characters which appear only once in each text,
+     * runs follow each other in both texts and do not overlap.
+     *
+     * @param p = played characters
+     * @param u = user characters
+     * @return played index, user index and length of every run
+     */
+    static int[] anchors(char[] p, char[] u) {
+        if (p.length < ANCHOR || u.length < ANCHOR) {
+            return new int[0];
+        }
+        Grams inPlayed = new Grams(p);
+        Grams inUser = new Grams(u);
+
+        // pairs of unique grams in order of the user index
+        int[] pi = new int[u.length - ANCHOR + 1];
+        int[] pj = new int[pi.length];
+        int pairs = 0;
+        long power = 1;
+        for (int k = 1; k < ANCHOR; k++) {
+            power *= BASE;
+        }
+        long h = 0;
+        for (int j = 0; j < u.length; j++) {
+            if (j >= ANCHOR) {
+                h -= u[j - ANCHOR] * power;
+            }
+            h = h * BASE + u[j];
+            int first = j - ANCHOR + 1;
+            if (first >= 0 && inUser.get(h) == first) {
+                int i = inPlayed.get(h);
+                if (i >= 0 && Arrays.equals(p, i, i + ANCHOR, u, first, first + ANCHOR)) {
+                    pi[pairs] = i;
+                    pj[pairs] = first;
+                    pairs++;
+                }
+            }
+        }
+
+        // longest chain of pairs increasing in the played index too
+        int[] tails = new int[pairs + 1]; // pair ending the best chain of each length
+        int[] parent = new int[pairs];
+        int length = 0;
+        for (int k = 0; k < pairs; k++) {
+            int a = 0;
+            int b = length;
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if (pi[tails[mid]] < pi[k]) {
+                    a = mid + 1;
+                } else {
+                    b = mid;
+                }
+            }
+            parent[k] = a > 0 ? tails[a - 1] : -1;
+            tails[a] = k;
+            if (a == length) {
+                length++;
+            }
+        }
+        int[] chain = new int[length];
+        for (int k = length - 1, c = length > 0 ? tails[length - 1] : -1; k >= 0; k--, c = parent[c]) {
+            chain[k] = c;
+        }
+
+        // anchors on one diagonal join into a run, crossing ones are dropped
+        int[] runs = new int[3 * length];
+        int count = 0;
+        int endI = 0;
+        int endJ = 0;
+        for (int c : chain) {
+            int i = pi[c];
+            int j = pj[c];
+            if (count > 0 && i - j == runs[count - 3] - runs[count - 2] && i <= endI) {
+                endI = i + ANCHOR;
+                endJ = j + ANCHOR;
+                runs[count - 1] = endI - runs[count - 3];
+            } else if (i >= endI && j >= endJ) {
+                runs[count] = i;
+                runs[count + 1] = j;
+                runs[count + 2] = ANCHOR;
+                count += 3;
+                endI = i + ANCHOR;
+                endJ = j + ANCHOR;
+            }
+        }
+        return Arrays.copyOf(runs, count);
+    }
+
+    /**
+     * Aligns played characters from i0 to i1 with user characters from j0
+     * to j1, adds the mistakes in order of played characters
+     */
+    private static void align(char[] p, int i0, int i1, char[] u, int j0, int j1, List<Mistake> mistakes) {
+        int n = i1 - i0;
+        int m = j1 - j0;
+        if (n == 0 || m == 0) {
+            for (int j = j0; j < j1; j++) {
+                mistakes.add(new Mistake(u[j], MISSING, i0));
+            }
+            for (int i = i0; i < i1; i++) {
+                mistakes.add(new Mistake(MISSING, p[i], i));
+            }
+            return;
+        }
+
+        // whole table, or a band around the line between its corners
+        int w = m + 1;
+        if ((long) (n + 1) * (m + 1) > MAX_CELLS) {
+            w = Math.min(w, 2 * (BAND + (m + n - 1) / n) + 1);
+        }
+        int stride = (2 * w + 63) >>> 6; // longs per row, 2 bits per cell
+        long[] dirs = new long[(n + 1) * stride];
+        int[] lo = new int[n + 1]; // first column of the band in each row
+        int[] prev = new int[w + 1]; // prev[w] stays INF, it stands for cells right of the band
+        int[] cur = new int[w + 1];
+        cur[w] = INF;
+
+        for (int b = 0; b < w; b++) {
+            prev[b] = b;
+            setDir(dirs, 0, stride, b, LEFT);
+        }
+        prev[w] = INF;
+
+        for (int i = 1; i <= n; i++) {
+            int l = (int) Math.max(0, Math.min((long) i * m / n - w / 2, m + 1 - w));
+            int shift = l - lo[i - 1];
+            lo[i] = l;
+
+            char pc = p[i0 + i - 1];
+            int left = INF;
+            int row = i * stride;
+            long bits = 0;
+            for (int b = 0; b < w; b++) {
+                int j = l + b;
+                // (i - 1, j - 1) and (i - 1, j) are at b + shift - 1 and b + shift of previous row
+                int pb = b + shift;
+                int cost = j > 0 && pb > 0 && pb <= w ? prev[pb - 1] + (pc == u[j0 + j - 1] ? 0 : 1) : INF;
+                int dir = DIAG;
+                int up = pb < w ? prev[pb] + 1 : INF;
+                if (up < cost) {
+                    cost = up;
+                    dir = UP;
+                }
+                if (left + 1 < cost) {
+                    cost = left + 1;
+                    dir = LEFT;
+                }
+                cur[b] = cost;
+                left = cost;
+                bits |= (long) dir << ((2 * b) & 63);
+                if (((2 * b) & 63) == 62 || b == w - 1) {
+                    dirs[row + ((2 * b) >>> 6)] = bits;
+                    bits = 0;
+                }
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+
+        int from = mistakes.size();
+        int i = n;
+        int j = m;
+        while (i > 0 || j > 0) {
+            int dir = i == 0 ? LEFT : j == 0 ? UP : getDir(dirs, i, stride, j - lo[i]);
+            if (dir == DIAG) {
+                if (p[i0 + i - 1] != u[j0 + j - 1]) {
+                    mistakes.add(new Mistake(u[j0 + j - 1], p[i0 + i - 1], i0 + i - 1));
+                }
+                i--;
+                j--;
+            } else if (dir == UP) {
+                mistakes.add(new Mistake(MISSING, p[i0 + i - 1], i0 + i - 1));
+                i--;
+            } else {
+                mistakes.add(new Mistake(u[j0 + j - 1], MISSING, i0 + i));
+                j--;
+            }
+        }
+        Collections.reverse(mistakes.subList(from, mistakes.size()));
+    }
+
+    /**
+     * Upper-cases the text, replaces every run of white space with one
+     * space and trims it
+     *
+     * @param text = text to normalize
+     * @return normalized text
+     */
+    static String normalize(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    sb.append(' ');
+                    space = true;
+                }
+            } else {
+                sb.append(Character.toUpperCase(c));
+                space = false;
+            }
+        }
+        if (sb.length() > 0 && space) {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    private static void setDir(long[] dirs, int row, int stride, int b, int dir) {
+        int bit = 2 * b;
+        int k = row * stride + (bit >>> 6);
+        dirs[k] = (dirs[k] & ~(3L << (bit & 63))) | ((long) dir << (bit & 63));
+    }
+
+    private static int getDir(long[] dirs, int row, int stride, int b) {
+        int bit = 2 * b;
+        return (int) (dirs[row * stride + (bit >>> 6)] >>> (bit & 63)) & 3;
+    }
+
+    /**
+     * Positions of grams of ANCHOR characters which appear once in a text,
+     * an open addressing table keyed by the rolling hash of a gram
+     */
+    private static class Grams {
+
+        private final long[] keys;
+        private final int[] positions; // position + 1, 0 for an empty slot, -1 for a repeated gram
+
+        Grams(char[] text) {
+            int capacity = Integer.highestOneBit(Math.max(1, 2 * text.length - 1)) << 1;
+            keys = new long[capacity];
+            positions = new int[capacity];
+            long power = 1;
+            for (int k = 1; k < ANCHOR; k++) {
+                power *= BASE;
+            }
+            long h = 0;
+            for (int j = 0; j < text.length; j++) {
+                if (j >= ANCHOR) {
+                    h -= text[j - ANCHOR] * power;
+                }
+                h = h * BASE + text[j];
+                if (j >= ANCHOR - 1) {
+                    int s = slot(h);
+                    positions[s] = positions[s] == 0 ? j - ANCHOR + 2 : -1;
+                    keys[s] = h;
+                }
+            }
+        }
+
+        /**
+         * @return position of the only gram with the hash, -1 if there is
+         * none or more
+         */
+        int get(long h) {
+            int pos = positions[slot(h)];
+            return pos > 0 ? pos - 1 : -1;
+        }
+
+        private int slot(long h) {
+            int mask = keys.length - 1;
+            int s = (int) (h ^ (h >>> 29)) & mask;
+            while (positions[s] != 0 && keys[s] != h) {
+                s = (s + 1) & mask;
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Result of a check
+     */
+    public static class Result {
+
+        private final int length;
+        private final List<Mistake> mistakes;
+        private final Map<Character, Map<Character, Integer>> confusions;
+
+        /**
+         * @param length = number of played characters
+         * @param mistakes = mistakes in order of the played characters
+         */
+        Result(int length, List<Mistake> mistakes) {
+            this.length = length;
+            this.mistakes = mistakes;
+            confusions = new TreeMap<>();
+            for (Mistake m : mistakes) {
+                confusions.computeIfAbsent(m.getRight(), (Character c) -> new TreeMap<>())
+                        .merge(m.getWrong(), 1, Integer::sum);
+            }
+        }
+
+        /**
+         * @return the mistakes
+         */
+        public List<Mistake> getMistakes() {
+            return mistakes;
+        }
+
+        /**
+         * @return number of played characters
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return share of played characters copied right, between 0 and 1
+         */
+        public double getAccuracy() {
+            return length == 0 ? 1 : Math.max(0, 1 - mistakes.size() / (double) length);
+        }
+
+        /**
+         * Counts of mistakes by played character and what the user wrote
+         * instead, MISSING stands for a dropped or an extra character
+         *
+         * @return played character -&gt; written character -&gt; count
+         */
+        public Map<Character, Map<Character, Integer>> getConfusions() {
+            return confusions;
+        }
+    }
+
+    /**
+     * Wrong character, correct character and index of mistake
+     */
+    public static class Mistake {
+
+        private final char wrong;
+        private final char right;
+        private final int index;
+
+        /**
+         * @param wrong = character written by user, MISSING if the user dropped one
+         * @param right = played character, MISSING if the user wrote an extra one
+         * @param index = position of the mistake in played characters
+         */
+        public Mistake(char wrong, char right, int index) {
+            this.wrong = wrong;
+            this.right = right;
+            this.index = index;
+        }
+
+        /**
+         * @return the wrong
+         */
+        public char getWrong() {
+            return wrong;
+        }
+
+        /**
+         * @return the right
+         */
+        public char getRight() {
+            return right;
+        }
+
+        /**
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package morse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Codebook translates characters into morse code. It is immutable and looks
+ * characters up directly by code point, so translation costs one array
+ * access and allocates nothing. Codes are translated back by decode() through
+ * an open addressing hash table, which allocates nothing either.
+ *
+ * Code of a character is packed into a long as the keying timeline in units:
+ * bit i is set if the key is down during unit i, the number of units is in
+ * the top 6 bits. The timeline includes 1 unit gap after every element and
+ * 2 more units ending the character. Character without code has code NONE.
+ *
+ * Codebooks are loaded from definition files with one character per line:
+ * the character followed by dots and dashes. Prosigns are written as their
+ * name in angle brackets (e.g. &lt;SK&gt;) and get code points from the
+ * Unicode private use area. Lines starting with # are comments.
+ *
+ * @author Matus Namesny
+ */
+public final class Codebook {
+
+    /**
+     * Code of characters without morse equivalent
+     */
+    public static final long NONE = 0;
+
+    /**
+     * Code of space, 4 units of silence which make 7 units together with the
+     * end of the previous character
+     */
+    public static final long SPACE = 4L << 58;
+
+    /**
+     * Code of one unit of silence
+     */
+    public static final long PAUSE = 1L << 58;
+
+    /**
+     * Latin letters, digits, ITU punctuation and prosigns
+     */
+    public static final String DEFAULT = "codebook.txt";
+
+    /**
+     * Russian Cyrillic letters
+     */
+    public static final String CYRILLIC = "codebook-cyrillic.txt";
+
+    /**
+     * Greek letters
+     */
+    public static final String GREEK = "codebook-greek.txt";
+
+    /**
+     * Japanese Wabun code of katakana
+     */
+    public static final String WABUN = "codebook-wabun.txt";
+
+    private static final int MAX_UNITS = 58;
+    private static final int FIRST_PROSIGN = 0xE000; // private use area
+
+    private final long[][] pages; // pages of 256 code points, missing page means no codes
+    private final List<String> prosigns;
+    private final long[] codes; // hash table of codes, NONE is an empty slot
+    private final int[] chars; // characters of the codes
+
+    private Codebook(long[][] pages, List<String> prosigns, long[] codes, int[] chars) {
+        this.pages = pages;
+        this.prosigns = prosigns;
+        this.codes = codes;
+        this.chars = chars;
+    }
+
+    /**
+     * Returns code of a character
+     *
+     * @param codePoint = character to translate
+     * @return code of the character or NONE
+     */
+    public long encode(int codePoint) {
+        if (codePoint < 0 || (codePoint >> 8) >= pages.length) {
+            return NONE;
+        }
+        long[] page = pages[codePoint >> 8];
+        return page == null ? NONE : page[codePoint & 0xFF];
+    }
+
+    /**
+     * Returns character of a code, when more characters share the code the
+     * first defined one, for letters the upper case one
+     *
+     * @param code = code of a character
+     * @return the character or -1 if no character has the code
+     */
+    public int decode(long code) {
+        if (code == NONE) {
+            return -1;
+        }
+        int mask = codes.length - 1;
+        for (int i = slot(code) & mask; codes[i] != NONE; i = (i + 1) & mask) {
+            if (codes[i] == code) {
+                return chars[i];
+            }
+        }
+        return -1;
+    }
+
+    private static int slot(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @param codePoint = character
+     * @return true if the character has morse code
+     */
+    public boolean contains(int codePoint) {
+        return encode(codePoint) != NONE;
+    }
+
+    /**
+     * @param name = name of prosign without brackets, e.g. SK
+     * @return code point of the prosign or -1 if it is not defined
+     */
+    public int prosign(String name) {
+        int i = prosigns.indexOf(name);
+        return i < 0 ? -1 : FIRST_PROSIGN + i;
+    }
+
+    /**
+     * @param codePoint = character
+     * @return printable form of the character, prosigns in angle brackets
+     */
+    public String name(int codePoint) {
+        int i = codePoint - FIRST_PROSIGN;
+        if (i >= 0 && i < prosigns.size()) {
+            return "<" + prosigns.get(i) + ">";
+        }
+        return new String(Character.toChars(codePoint));
+    }
+
+    /**
+     * @param code = code of a character
+     * @return number of units of the code including gaps
+     */
+    public static int units(long code) {
+        return (int) (code >>> 58);
+    }
+
+    /**
+     * @param code = code of a character
+     * @param unit = index of a unit
+     * @return true if the key is down during the unit
+     */
+    public static boolean isDown(long code, int unit) {
+        return (code & (1L << unit)) != 0;
+    }
+
+    /**
+     * Packs dots and dashes into code
+     *
+     * @param morse = string of dots and dashes
+     * @return code of the string
+     */
+    public static long pack(String morse) {
+        long bits = 0;
+        int unit = 0;
+        for (int i = 0; i < morse.length(); i++) {
+            int length;
+            switch (morse.charAt(i)) {
+                case '.':
+                    length = 1;
+                    break;
+                case '-':
+                    length = 3;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a morse code: " + morse);
+            }
+            if (unit + length + 3 > MAX_UNITS) {
+                throw new IllegalArgumentException("Morse code is too long: " + morse);
+            }
+            bits |= ((1L << length) - 1) << unit;
+            unit += length + 1;
+        }
+        return bits | ((long) (unit + 2) << 58);
+    }
+
+    /**
+     * Unpacks code into dots and dashes
+     *
+     * @param code = code of a character
+     * @return string of dots and dashes
+     */
+    public static String toMorse(long code) {
+        StringBuilder sb = new StringBuilder();
+        int units = units(code);
+        int unit = 0;
+        while (unit < units) {
+            if (isDown(code, unit)) {
+                int start = unit;
+                while (isDown(code, unit)) {
+                    unit++;
+                }
+                sb.append(unit - start == 1 ? '.' : '-');
+            } else {
+                unit++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Default codebook, it contains all bundled definitions. Definitions are
+     * read in order Latin, Cyrillic, Greek, Wabun, so when two characters share
+     * a code the Latin one comes first.
+     *
+     * @return the default codebook
+     */
+    public static Codebook getDefault() {
+        return Holder.DEFAULT_CODEBOOK;
+    }
+
+    /**
+     * Loads codebook from definitions bundled with the program
+     *
+     * @param names = names of definition files, e.g. DEFAULT, CYRILLIC
+     * @return new codebook
+     * @throws IOException
+     */
+    public static Codebook fromResources(String... names) throws IOException {
+        Builder builder = new Builder();
+        for (String name : names) {
+            InputStream in = Codebook.class.getResourceAsStream(name);
+            if (in == null) {
+                throw new IOException("Missing codebook definition " + name);
+            }
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                builder.read(br, name);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Loads codebook from definition files
+     *
+     * @param files = definition files in UTF-8
+     * @return new codebook
+     * @throws IOException
+     */
+    public static Codebook fromFiles(File... files) throws IOException {
+        Builder builder = new Builder();
+        for (File file : files) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                builder.read(br, file.getName());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects definitions of a codebook
+     */
+    private static class Builder {
+
+        private long[][] pages = new long[1][];
+        private final List<String> prosigns = new ArrayList<>();
+        private final Map<Long, Integer> decoded = new LinkedHashMap<>(); // first character of each code
+
+        Builder() {
+            put(' ', SPACE);
+        }
+
+        private void read(BufferedReader br, String name) throws IOException {
+            String line;
+            int n = 0;
+            while ((line = br.readLine()) != null) {
+                n++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length < 2) {
+                    throw new IOException(name + ":" + n + ": expected character and code");
+                }
+                int codePoint;
+                if (parts[0].length() > 2 && parts[0].startsWith("<") && parts[0].endsWith(">")) {
+                    String prosign = parts[0].substring(1, parts[0].length() - 1);
+                    if (!prosigns.contains(prosign)) {
+                        prosigns.add(prosign);
+                    }
+                    codePoint = FIRST_PROSIGN + prosigns.indexOf(prosign);
+                } else if (parts[0].codePointCount(0, parts[0].length()) == 1) {
+                    codePoint = parts[0].codePointAt(0);
+                } else {
+                    throw new IOException(name + ":" + n + ": expected one character, found " + parts[0]);
+                }
+                long code;
+                try {
+                    code = pack(parts[1]);
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(name + ":" + n + ": " + ex.getMessage(), ex);
+                }
+                put(codePoint, code);
+                int lower = Character.toLowerCase(codePoint);
+                if (lower != codePoint) {
+                    put(lower, code);
+                }
+            }
+        }
+
+        private void put(int codePoint, long code) {
+            int p = codePoint >> 8;
+            if (p >= pages.length) {
+                pages = Arrays.copyOf(pages, p + 1);
+            }
+            if (pages[p] == null) {
+                pages[p] = new long[256];
+            }
+            pages[p][codePoint & 0xFF] = code;
+            decoded.putIfAbsent(code, codePoint);
+        }
+
+        private Codebook build() {
+            int size = Integer.highestOneBit(Math.max(1, decoded.size()) * 2) * 2; // at most half full
+            long[] codes = new long[size];
+            int[] chars = new int[size];
+            decoded.forEach((code, codePoint) -> {
+                int i = slot(code) & (size - 1);
+                while (codes[i] != NONE) {
+                    i = (i + 1) & (size - 1);
+                }
+                codes[i] = code;
+                chars[i] = codePoint;
+            });
+            return new Codebook(pages, new ArrayList<>(prosigns), codes, chars);
+        }
+    }
+
+    /**
+     * Loads the default codebook on first use
+     */
+    private static class Holder {
+
+        private static final Codebook DEFAULT_CODEBOOK = load();
+
+        private static Codebook load() {
+            try {
+                return fromResources(DEFAULT, CYRILLIC, GREEK, WABUN);
+            } catch (IOException ex) {
+                Logger.getLogger(Codebook.class.getName()).log(Level.SEVERE, null, ex);
+                return new Builder().build();
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Corpus is a large UTF-8 text file mapped into memory together with an
+ * index of its sentences, so a random sentence can be found in constant
+ * time without reading the file. Corpus is immutable and safe to share,
+ * every Source keeps its own position.
+ *
+ * A sentence starts at the first non-white character after a line break or
+ * after '.', '!' or '?' followed by white space. The index is built on
+ * first use and saved next to the file with extension .idx. Offsets are
+ * kept as a long for every 1024 sentences and a 32 bit distance from it for
+ * every sentence, so the index takes about 4 bytes per sentence.
+ *
+ * An open corpus is shared by every Source of its excerpts. When the last
+ * of them is closed, the corpus is dropped from the shared corpora and its
+ * mapping is released with it.
+ *
+ * @author Matus Namesny
+ */
+public final class Corpus {
+
+    private static final Map<String, Corpus> OPEN = new ConcurrentHashMap<>();
+
+    private static final int MAGIC = 0x4D494458; // MIDX
+    private static final int VERSION = 2; // 1 indexed a file of white space as one sentence
+    private static final int BLOCK_SHIFT = 10; // 1024 sentences per block
+    private static final int SEGMENT_SHIFT = 30; // files are mapped in 1 GB segments
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final File file;
+    private final String key; // canonical path in OPEN
+    private final long length;
+    private final MappedByteBuffer[] segments;
+
+    private long[] bases; // offset of first sentence of every block
+    private int[] deltas; // distance of sentence from the base of its block
+    private int count; // number of sentences
+    private final AtomicInteger users = new AtomicInteger(); // sources of excerpts
+
+    private Corpus(File file, String key) throws IOException {
+        this.file = file;
+        this.key = key;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1L, length - start));
+            }
+        }
+        if (!loadIndex()) {
+            buildIndex();
+            saveIndex();
+        }
+        if (count == 0) {
+            throw new IOException("No sentences in " + file);
+        }
+    }
+
+    /**
+     * Opens a corpus, a file opened before is shared. The corpus is kept
+     * open for the Sources of its excerpts, so the caller must pass it to a
+     * Source and close that Source when done, a corpus which no Source ever
+     * took stays open until the file changes.
+     *
+     * @param file = UTF-8 text file
+     * @return the corpus
+     * @throws IOException if the file cannot be read or has only white space
+     */
+    public static Corpus open(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        try {
+            return OPEN.compute(key, (String k, Corpus corpus) -> {
+                if (corpus != null && corpus.length == file.length()) {
+                    return corpus;
+                }
+                try {
+                    return new Corpus(file, k);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * A Source starts taking excerpts
+     */
+    void retain() {
+        users.incrementAndGet();
+    }
+
+    /**
+     * A Source is closed, the corpus is dropped with the last of them
+     */
+    void release() {
+        if (users.decrementAndGet() == 0) {
+            OPEN.remove(key, this);
+        }
+    }
+
+    /**
+     * @param i = index of sentence
+     * @return offset of the sentence in bytes
+     */
+    public long start(int i) {
+        return bases[i >>> BLOCK_SHIFT] + (deltas[i] & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param i = index of sentence
+     * @param sentences = number of sentences
+     * @return offset of the end of the excerpt starting at sentence i
+     */
+    public long end(int i, int sentences) {
+        long j = (long) i + sentences;
+        return j < count ? start((int) j) : length;
+    }
+
+    /**
+     * @param pos = offset in bytes
+     * @return byte at the offset
+     */
+    public byte get(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * @return number of sentences
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return length of the file in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Scans the file once and collects starts of sentences
+     */
+    private void buildIndex() {
+        bases = new long[16];
+        deltas = new int[1024];
+        count = 0;
+        boolean boundary = true; // next non-white character starts a sentence
+        boolean stop = false; // last character was '.', '!' or '?'
+        for (long pos = 0; pos < length; pos++) {
+            byte b = get(pos);
+            boolean white = b == ' ' || b == '\t' || b == '\r' || b == '\n';
+            if (white) {
+                if (stop || b == '\n') {
+                    boundary = true;
+                }
+                stop = false;
+                continue;
+            }
+            if (boundary) {
+                add(pos);
+                boundary = false;
+            }
+            stop = b == '.' || b == '!' || b == '?';
+        }
+        bases = Arrays.copyOf(bases, (count + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT);
+        deltas = Arrays.copyOf(deltas, count);
+    }
+
+    private void add(long pos) {
+        int block = count >>> BLOCK_SHIFT;
+        if (block >= bases.length) {
+            bases = Arrays.copyOf(bases, bases.length * 2);
+        }
+        if (count >= deltas.length) {
+            deltas = Arrays.copyOf(deltas, deltas.length * 2);
+        }
+        if ((count & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+            bases[block] = pos;
+        }
+        long delta = pos - bases[block];
+        if (delta > 0xFFFFFFFFL) {
+            // too far from the base of its block, the sentence is not
+            // indexed and is played as the rest of the sentence before it
+            return;
+        }
+        deltas[count++] = (int) delta;
+    }
+
+    private File indexFile() {
+        return new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * Reads saved index if it belongs to the current version of the file
+     *
+     * @return true if the index was loaded
+     */
+    private boolean loadIndex() {
+        File idx = indexFile();
+        if (!idx.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(idx.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || buf.getLong() != length || buf.getLong() != file.lastModified()) {
+                return false;
+            }
+            count = buf.getInt();
+            int blocks = buf.getInt();
+            bases = new long[blocks];
+            deltas = new int[count];
+            buf.asLongBuffer().get(bases);
+            buf.position(buf.position() + blocks * 8);
+            buf.asIntBuffer().get(deltas);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            Logger.getLogger(Corpus.class.getName()).log(Level.WARNING, "Cannot read index " + idx, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Saves index next to the file, the corpus works without it if the
+     * directory is not writable
+     */
+    private void saveIndex() {
+        File idx = indexFile();
+        long size = 32 + bases.length * 8L + count * 4L;
+        if (size > Integer.MAX_VALUE) {
+            return; // rebuilt every time, it is rather a sign to split the corpus
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(length).putLong(file.lastModified());
+        buf.putInt(count).putInt(bases.length);
+        buf.asLongBuffer().put(bases);
+        buf.position(buf.position() + bases.length * 8);
+        buf.asIntBuffer().put(deltas, 0, count);
+        buf.rewind();
+        try (FileChannel channel = FileChannel.open(idx.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Corpus.class.getName()).log(Level.WARNING, "Cannot save index " + idx, ex);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Decoder translates morse audio back into characters, e.g. to verify
+ * rendered sessions or to copy recordings. PCM is consumed in blocks of any
+ * size, so a stream of any length is decoded in constant memory.
+ *
+ * The tone is detected by Goertzel filters at its pitch in blocks of
+ * BLOCK_MILLIS. OVERLAP filters start in turn, so a block ends every
+ * BLOCK_MILLIS / OVERLAP and edges of the key are found that precisely. If
+ * the pitch is not given, it is the strongest one between MIN_FREQUENCY and
+ * MAX_FREQUENCY in the first SCAN_MILLIS of audio. The key is down when the
+ * level of a block is above the middle between the noise floor (mean level
+ * without the tone) and the peak level (decaying slowly), and a change
+ * counts only when it lasts a whole block, so single noisy blocks are
+ * ignored. Nothing is keyed in the first two blocks, while the floor is a
+ * plain mean of few blocks, or while the peak is not MIN_SNR above it.
+ *
+ * Timing adapts to the sender. The first marks and gaps are kept until
+ * there are two marks and one element is at least twice as long as the
+ * shortest, which is then the first unit, and they are decoded with it, so
+ * a stream may start with a dash. Then the length of a unit follows lengths
+ * of dots, dashes divided by 3 and gaps inside characters. A mark longer
+ * than 2 units is a dash, a gap of 2 units ends a character and a gap of 5
+ * units is a word space. Elements of a character are packed like in
+ * Codebook and the character is looked up by Codebook.decode(), codes
+ * without a character become UNKNOWN.
+ *
+ * @author Matus Namesny
+ */
+public class Decoder {
+
+    /**
+     * Character emitted for a code which is not in the codebook
+     */
+    public static final int UNKNOWN = 0xFFFD;
+
+    /**
+     * Length of a Goertzel block in milliseconds, a unit at 60 wpm is 4 blocks
+     */
+    public static final int BLOCK_MILLIS = 5;
+
+    /**
+     * Number of overlapping blocks
+     */
+    public static final int OVERLAP = 4;
+
+    /**
+     * Range and step of pitch search in Hz
+     */
+    public static final double MIN_FREQUENCY = 300;
+    public static final double MAX_FREQUENCY = 1200;
+    public static final double FREQUENCY_STEP = 25;
+
+    /**
+     * Length of audio searched for the pitch in milliseconds
+     */
+    public static final int SCAN_MILLIS = 2000;
+
+    private static final double SMOOTHING = 0.2; // weight of a new element in the unit
+    private static final double MIN_SNR = 5; // peak to floor ratio of a tone
+    private static final double MIN_LEVEL = 30; // amplitude of a tone in 16 bit samples
+    private static final double PEAK_SECONDS = 2; // time constant of the peak level
+    private static final double FLOOR_SECONDS = 0.2; // time constant of the noise floor
+    private static final int MAX_UNITS = 58;
+    private static final int LEARNED = 32; // elements kept at most before the first unit
+
+    private final Codebook codebook;
+    private final IntConsumer listener;
+    private final int sampleRate;
+    private final int hop; // frames between ends of blocks
+    private final int block; // frames per block
+    private final double peakDecay;
+    private final double floorRise;
+
+    private double frequency; // 0 while the pitch is searched
+    private double coeff; // 2 cos(w) of the pitch
+    private short[] scan; // audio kept while the pitch is searched
+    private int scanned;
+
+    private final double[] s1 = new double[OVERLAP]; // Goertzel state of each block
+    private final double[] s2 = new double[OVERLAP];
+    private int n; // frames since the first block started, modulo block
+    private long frames;
+
+    private double peak;
+    private double floor = -1;
+    private long quiet; // blocks which updated the floor
+    private boolean down;
+    private int changed; // ends of blocks disagreeing with the key
+    private long run; // frames since the key changed
+
+    private double unit; // frames per unit, 0 until it is learned
+    private final long[] learned = new long[LEARNED]; // lengths of first elements, gaps negative
+    private final long[] learnedAt = new long[LEARNED]; // frames where they started
+    private int elements;
+    private int learnedMarks;
+    private final long[] marks = new long[MAX_UNITS / 2]; // lengths of marks of the current character
+    private int count;
+    private long start; // frame where the current character started
+    private long position; // frame where the last emitted character started
+    private boolean word; // a character was emitted since the last space
+
+    /**
+     * @param codebook = codebook of the sender
+     * @param sampleRate = frames per second of the audio
+     * @param frequency = pitch of the tone in Hz, 0 to search for it
+     * @param listener = receives decoded characters, spaces and UNKNOWN
+     * @throws IllegalArgumentException if the pitch cannot be in the audio
+     */
+    public Decoder(Codebook codebook, int sampleRate, double frequency, IntConsumer listener) {
+        this.codebook = codebook;
+        this.listener = listener;
+        this.sampleRate = sampleRate;
+        hop = Math.max(1, sampleRate * BLOCK_MILLIS / 1000 / OVERLAP);
+        block = hop * OVERLAP;
+        peakDecay = hop / (PEAK_SECONDS * sampleRate);
+        floorRise = hop / (FLOOR_SECONDS * sampleRate);
+        if (frequency > 0) {
+            new Oscillator(frequency, sampleRate); // checks the pitch
+            tune(frequency);
+        } else {
+            scan = new short[sampleRate * SCAN_MILLIS / 1000];
+        }
+    }
+
+    /**
+     * Decodes PCM in the format of Sound, 16 bit signed little endian mono
+     *
+     * @param pcm = buffer with audio
+     * @param offset = offset of the first frame in bytes
+     * @param length = number of bytes, a multiple of 2
+     */
+    public void process(byte[] pcm, int offset, int length) {
+        for (int i = offset; i < offset + length - 1; i += 2) {
+            sample((short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8)));
+        }
+    }
+
+    /**
+     * Decodes audio in any PCM format, more channels are mixed into one
+     *
+     * @param in = audio stream, it is read to the end but not closed
+     * @throws IOException
+     */
+    public void process(AudioInputStream in) throws IOException {
+        AudioFormat source = in.getFormat();
+        int channels = source.getChannels();
+        AudioFormat target = new AudioFormat(source.getSampleRate(), 16, channels, true, false);
+        AudioInputStream pcm = source.matches(target) ? in : AudioSystem.getAudioInputStream(target, in);
+        int frameSize = 2 * channels;
+        byte[] buf = new byte[frameSize * Math.max(1, sampleRate / 10)];
+        int filled = 0;
+        int read;
+        while ((read = pcm.read(buf, filled, buf.length - filled)) >= 0) {
+            filled += read;
+            int end = filled - filled % frameSize;
+            if (channels == 1) {
+                process(buf, 0, end);
+            } else {
+                for (int i = 0; i < end; i += frameSize) {
+                    int sum = 0;
+                    for (int c = i; c < i + frameSize; c += 2) {
+                        sum += (short) ((buf[c] & 0xFF) | (buf[c + 1] << 8));
+                    }
+                    sample(sum / channels);
+                }
+            }
+            System.arraycopy(buf, end, buf, 0, filled - end); // a frame split between reads
+            filled -= end;
+        }
+    }
+
+    /**
+     * Ends the stream, emits the character which has not ended by a gap
+     */
+    public void flush() {
+        if (scan != null) {
+            search();
+        }
+        if (down) {
+            if (unit == 0) {
+                learn(true, run, frames - run);
+            } else {
+                mark(run);
+            }
+            down = false;
+            run = 0;
+        }
+        if (elements > 0) {
+            replay();
+        }
+        if (count > 0) {
+            character();
+        }
+    }
+
+    /**
+     * @return pitch of the tone in Hz, 0 while it is searched
+     */
+    public double getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return current speed in words per minute, 0 until it is learned
+     */
+    public double getWpm() {
+        return unit == 0 ? 0 : sampleRate * 1.2 / unit;
+    }
+
+    /**
+     * @return frame where the character passed to the listener started, for a
+     * space frame where the gap started, frames are counted from 0 at the
+     * start of the stream
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return number of decoded frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    private void tune(double frequency) {
+        this.frequency = frequency;
+        coeff = 2 * Math.cos(2 * Math.PI * frequency / sampleRate);
+    }
+
+    private void sample(int x) {
+        if (scan != null) {
+            scan[scanned++] = (short) x;
+            if (scanned == scan.length) {
+                search();
+            }
+            return;
+        }
+        for (int k = 0; k < OVERLAP; k++) {
+            double s = x + coeff * s1[k] - s2[k];
+            s2[k] = s1[k];
+            s1[k] = s;
+        }
+        if (++n % hop == 0) {
+            if (n == block) {
+                n = 0;
+            }
+            int k = n / hop; // blocks end in turn
+            double power = s1[k] * s1[k] + s2[k] * s2[k] - coeff * s1[k] * s2[k];
+            s1[k] = 0;
+            s2[k] = 0;
+            frames += hop;
+            level(Math.sqrt(Math.max(0, power)) * 2 / block);
+        }
+    }
+
+    /**
+     * Tunes to the strongest pitch of the scanned audio and decodes it
+     */
+    private void search() {
+        short[] audio = scan;
+        scan = null;
+        double best = -1;
+        for (double f = MIN_FREQUENCY; f <= MAX_FREQUENCY && f < sampleRate / 2.0; f += FREQUENCY_STEP) {
+            double c = 2 * Math.cos(2 * Math.PI * f / sampleRate);
+            double energy = 0;
+            for (int start = 0; start + block <= scanned; start += block) {
+                double a = 0;
+                double b = 0;
+                for (int i = start; i < start + block; i++) {
+                    double s = audio[i] + c * a - b;
+                    b = a;
+                    a = s;
+                }
+                energy += a * a + b * b - c * a * b;
+            }
+            if (energy > best) {
+                best = energy;
+                tune(f);
+            }
+        }
+        for (int i = 0; i < scanned; i++) {
+            sample(audio[i]);
+        }
+    }
+
+    /**
+     * Follows the key by the level of a block
+     *
+     * @param a = amplitude of the tone in the block
+     */
+    private void level(double a) {
+        if (floor < 0) {
+            floor = a;
+            peak = a;
+        }
+        peak = a > peak ? a : peak - (peak - a) * peakDecay;
+        boolean high = a > floor + (peak - floor) * (down ? 0.4 : 0.6);
+        boolean tone = high && frames > 2 * block && peak > MIN_LEVEL && peak > MIN_SNR * floor;
+        if (!high) {
+            // mean level without the tone, a plain mean until the time constant is reached
+            floor += (a - floor) * Math.max(floorRise, 1.0 / ++quiet);
+        }
+
+        run += hop;
+        if (tone == down) {
+            changed = 0;
+        } else if (++changed == OVERLAP) {
+            long length = run - block; // the change happened a block ago
+            if (unit == 0) {
+                learn(down, length, frames - block - length);
+                if (unit > 0 && !down && count == 0) {
+                    start = frames - block; // the gap which taught the unit ended a character
+                }
+            } else if (down) {
+                mark(length);
+            } else if (count == 0) {
+                start = frames - block;
+            } else if (length < unit / 2) {
+                unit = length; // the sender sped up, gaps inside characters are 1 unit
+            } else if (length < 2 * unit) {
+                adapt(length);
+            }
+            down = tone;
+            run = block;
+            changed = 0;
+        }
+        if (!down && unit > 0) {
+            if (count > 0 && run >= 2 * unit) {
+                character();
+            }
+            if (word && run >= 5 * unit) {
+                word = false;
+                position = frames - run;
+                listener.accept(' ');
+            }
+        }
+    }
+
+    /**
+     * Adds a mark to the current character, marks are told apart when the
+     * character ends, so they are judged by the unit adapted to all of them
+     *
+     * @param length = frames with key down
+     */
+    private void mark(long length) {
+        if (length < unit / 2) {
+            unit = length; // the sender sped up, it is a dot
+        }
+        adapt(length > 2 * unit ? length / 3.0 : length);
+        if (count < marks.length) {
+            marks[count] = length;
+        }
+        count++;
+    }
+
+    /**
+     * Keeps an element until the unit is known
+     *
+     * @param mark = true for a mark, false for a gap
+     * @param length = frames of the element
+     * @param at = frame where the element started
+     */
+    private void learn(boolean mark, long length, long at) {
+        if (!mark && elements == 0) {
+            return; // silence before the first mark
+        }
+        learned[elements] = mark ? length : -length;
+        learnedAt[elements] = at;
+        elements++;
+        if (mark) {
+            learnedMarks++;
+        }
+        long shortest = Long.MAX_VALUE;
+        long longest = 0;
+        for (int i = 0; i < elements; i++) {
+            shortest = Math.min(shortest, Math.abs(learned[i]));
+            longest = Math.max(longest, Math.abs(learned[i]));
+        }
+        if (learnedMarks >= 2 && longest >= 2 * shortest || elements == LEARNED) {
+            replay();
+        }
+    }
+
+    /**
+     * Takes the shortest kept element as the unit and decodes the kept
+     * elements as if the unit was known from the start
+     */
+    private void replay() {
+        unit = Long.MAX_VALUE;
+        for (int i = 0; i < elements; i++) {
+            unit = Math.min(unit, Math.abs(learned[i]));
+        }
+        for (int i = 0; i < elements; i++) {
+            long length = Math.abs(learned[i]);
+            if (learned[i] > 0) {
+                if (count == 0) {
+                    start = learnedAt[i];
+                }
+                mark(length);
+            } else if (length >= 2 * unit) {
+                character();
+                if (length >= 5 * unit) {
+                    word = false;
+                    position = learnedAt[i];
+                    listener.accept(' ');
+                }
+            } else if (length < unit / 2) {
+                unit = length;
+            } else {
+                adapt(length);
+            }
+        }
+        elements = 0;
+        learnedMarks = 0;
+    }
+
+    private void adapt(double length) {
+        unit += (length - unit) * SMOOTHING;
+    }
+
+    /**
+     * Emits the current character
+     */
+    private void character() {
+        long code = 0;
+        int units = 0;
+        for (int i = 0; i < Math.min(count, marks.length); i++) {
+            int l = marks[i] > 2 * unit ? 3 : 1;
+            if (units + l + 3 > MAX_UNITS) {
+                units = MAX_UNITS; // too long for a code
+                break;
+            }
+            code |= ((1L << l) - 1) << units;
+            units += l + 1;
+        }
+        position = start;
+        int c = count > marks.length || units + 2 > MAX_UNITS ? -1 : codebook.decode(code | ((long) (units + 2) << 58));
+        listener.accept(c < 0 ? UNKNOWN : c);
+        count = 0;
+        word = true;
+    }
+
+    /**
+     * Decodes an audio file
+     *
+     * @param file = WAV, AIFF or AU file with PCM
+     * @param codebook = codebook of the sender
+     * @param frequency = pitch of the tone in Hz, 0 to search for it
+     * @return decoded text without leading and trailing spaces
+     * @throws IOException
+     * @throws UnsupportedAudioFileException
+     */
+    public static String decode(File file, Codebook codebook, double frequency) throws IOException, UnsupportedAudioFileException {
+        StringBuilder sb = new StringBuilder();
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+            Decoder decoder = new Decoder(codebook, (int) in.getFormat().getSampleRate(), frequency, sb::appendCodePoint);
+            decoder.process(in);
+            decoder.flush();
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Decodes an audio file to standard output
+     *
+     * @param args = file and optionally pitch of the tone in Hz
+     * @throws IOException
+     * @throws UnsupportedAudioFileException
+     */
+    public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        if (args.length == 0) {
+            System.err.println("Usage: morse.Decoder file [pitch in Hz]");
+            System.exit(2);
+        }
+        double frequency = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        long start = System.nanoTime();
+        Decoder decoder;
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(new File(args[0]))) {
+            StringBuilder line = new StringBuilder();
+            decoder = new Decoder(Codebook.getDefault(), (int) in.getFormat().getSampleRate(), frequency, (int c) -> {
+                line.appendCodePoint(c);
+                if (c == ' ' && line.length() >= 72) {
+                    System.out.println(line.toString().trim());
+                    line.setLength(0);
+                }
+            });
+            decoder.process(in);
+            decoder.flush();
+            if (line.toString().trim().length() > 0) {
+                System.out.println(line.toString().trim());
+            }
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        long audio = decoder.getFrames() * 1000 / decoder.sampleRate;
+        Logger.getLogger(Decoder.class.getName()).log(Level.INFO, "Decoded {0} s in {1} ms ({2}x real time), {3} Hz, {4} wpm",
+                new Object[]{audio / 1000, millis, audio / millis, decoder.getFrequency(), Math.round(decoder.getWpm())});
+    }
+}
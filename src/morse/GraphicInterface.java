@@ -6,26 +6,19 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.sound.sampled.Clip;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
@@ -34,14 +27,17 @@ import javax.swing.JSlider;
 import javax.swing.JSpinner;
 import javax.swing.JTextArea;
 import javax.swing.SpinnerNumberModel;
-import javax.swing.Timer;
-import javax.swing.UIManager;
-import javax.swing.UnsupportedLookAndFeelException;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
 
 /**
- * Graphical User Interface and main program logic
+ * Graphical User Interface, the program logic is in Session
  *
  * @author Matus Namesny
  */
@@ -49,20 +45,19 @@ public class GraphicInterface extends JFrame {
 
     // Definition of window and variables
     
-    private final List<File> createdFiles;
-
     private final JTextArea inputTextArea;
     private final JScrollPane scrollPane;
 
     private File sourceFile = null;
-    private Writer writer; 
 
     private JRadioButton generRadioButton = new JRadioButton("Generate", true);
     private JRadioButton fileRadioButton = new JRadioButton("From file", false);
     private ButtonGroup buttonGroup = new ButtonGroup();
 
     private final JButton startButton; 
+    private final JButton pauseButton;
     private JButton browseButton; 
+    private JCheckBox excerptCheckBox = new JCheckBox("Random excerpts");
     private final JButton checkButton;
 
     private final JPanel startButtonPanel;
@@ -75,27 +70,33 @@ public class GraphicInterface extends JFrame {
     private final JPanel speedSpinnerPanel;
 
     private final JComboBox<Integer> sampleRate; 
-    private final JSlider framesPerWavelength; 
+    private final JSlider frequency; 
 
-    private JFileChooser fileChooser = new JFileChooser(); 
+    private JFileChooser fileChooser; // created on first Browse, it is slow to build
 
     private JCheckBox alphabetCheckBox = new JCheckBox("Alphabetical", true);
     private JCheckBox numbersCheckBox = new JCheckBox("Numbers");
     private JCheckBox specialCheckBox = new JCheckBox("Special characters");
+    private JCheckBox kochCheckBox = new JCheckBox("Koch method (" + Koch.START + ")");
 
     private final JPanel sourcePanel;
     private final JPanel charPanel;
 
     private final JPanel mainPanel;
+    private final JLabel statsLabel;
 
-    private Timer t1; 
-    private Timer t2; 
+    private final WaveformCache cache;
 
-    private Sound clip; 
+    private Session session; 
+    private final AudioEngine audio; // one line for all sessions, closed with the window
+    private final Koch koch = new Koch(); // progress of the Koch method
+    private boolean kochSession; // true if the session plays Koch characters
+    private ProgressStore progress; // null until loaded or if it cannot be opened
+    private Session savedSession; // checking a session again does not save it again
 
-    private InputStreamReader input; 
+    private LiveChecker liveChecker; // grades while the user copies
+    private final AtomicBoolean livePending = new AtomicBoolean();
 
-    private Boolean timerPlay;
     private Boolean buttonPlay; 
 
     /**
@@ -112,39 +113,43 @@ public class GraphicInterface extends JFrame {
         setLocationRelativeTo(null);
         setDefaultCloseOperation(HIDE_ON_CLOSE);
 
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException ex) {
-            Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
         mainPanel = new JPanel(new GridBagLayout());
         mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         Integer[] rates = {
-            8000, 11025, 16000, 22050};
+            8000, 11025, 16000, 22050, 44100, 48000};
         sampleRate = new JComboBox(rates);
         sampleRate.setToolTipText("Samples per second");
         sampleRate.setSelectedIndex(1);
         sampleRate.setBorder(new TitledBorder("Sample rate"));
         // Sample rate settings
 
-        framesPerWavelength = new JSlider(JSlider.HORIZONTAL, 10, 200, 25);
-        framesPerWavelength.setPaintTicks(true);
-        framesPerWavelength.setMajorTickSpacing(10);
-        framesPerWavelength.setMinorTickSpacing(5);
-        framesPerWavelength.setToolTipText("Frames per Wavelength");
-        framesPerWavelength.setBorder(new TitledBorder("Frames per wavelength"));
-        // Frames per wavelength settings
+        frequency = new JSlider(JSlider.HORIZONTAL, 300, 1200, (int) Sound.DEFAULT_FREQUENCY);
+        frequency.setPaintTicks(true);
+        frequency.setMajorTickSpacing(100);
+        frequency.setMinorTickSpacing(50);
+        frequency.setToolTipText("Pitch of the tone in Hz");
+        frequency.setBorder(new TitledBorder("Pitch (" + frequency.getValue() + " Hz)"));
+        frequency.addChangeListener((ChangeEvent e) -> {
+            ((TitledBorder) frequency.getBorder()).setTitle("Pitch (" + frequency.getValue() + " Hz)");
+            frequency.repaint();
+        });
+        // Pitch settings
 
         browseButton = new JButton("Browse");
         browseButton.setEnabled(false);
         browseButton.setToolTipText("Select file");
 
-        createdFiles = new ArrayList<>();
+        cache = new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES);
+        audio = new AudioEngine(new Sound((int) sampleRate.getSelectedItem(), frequency.getValue()),
+                AudioEngine.DEFAULT_BUFFER_MILLIS);
+        audio.open(); // the line is opened in background before the first Start
 
         browseButton.addActionListener((ActionEvent e) -> {
             // selecting input file
+            if (fileChooser == null) {
+                fileChooser = new JFileChooser();
+            }
             int returnVal = fileChooser.showOpenDialog(null);
 
             if (returnVal == JFileChooser.APPROVE_OPTION) {
@@ -156,9 +161,11 @@ public class GraphicInterface extends JFrame {
         fileRadioButton.addActionListener((ActionEvent e) -> {
 
             browseButton.setEnabled(true);
+            excerptCheckBox.setEnabled(true);
             alphabetCheckBox.setEnabled(false);
             numbersCheckBox.setEnabled(false);
             specialCheckBox.setEnabled(false);
+            kochCheckBox.setEnabled(false);
         });
 
         generRadioButton.addActionListener((ActionEvent e) -> {
@@ -166,17 +173,26 @@ public class GraphicInterface extends JFrame {
             sourceFile = null;
             browseButton.setEnabled(false);
             browseButton.setText("Browse");
+            excerptCheckBox.setEnabled(false);
+
+            kochCheckBox.setEnabled(true);
+            setClassesEnabled(!kochCheckBox.isSelected());
+        });
 
-            alphabetCheckBox.setEnabled(true);
-            numbersCheckBox.setEnabled(true);
-            specialCheckBox.setEnabled(true);
+        kochCheckBox.setToolTipText("Start with two characters, add one whenever you copy 90 % right");
+        kochCheckBox.addActionListener((ActionEvent e) -> {
+            setClassesEnabled(!kochCheckBox.isSelected());
         });
 
+        excerptCheckBox.setEnabled(false);
+        excerptCheckBox.setToolTipText("Play random sentences from a large text instead of the file from the start");
+
         buttonGroup.add(generRadioButton);
         buttonGroup.add(fileRadioButton);
 
         inputTextArea = new JTextArea(8, 40);
         inputTextArea.setLineWrap(true);
+        inputTextArea.getDocument().addDocumentListener(new Live());
 
         scrollPane = new JScrollPane(getInputTextArea());
         scrollPane.setBorder(new TitledBorder("User input"));
@@ -187,6 +203,7 @@ public class GraphicInterface extends JFrame {
         sourcePanel.add(generRadioButton);
         sourcePanel.add(fileRadioButton);
         sourcePanel.add(browseButton);
+        sourcePanel.add(excerptCheckBox);
 
         timeSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 60, 1));
         timeSpinner.setToolTipText("Set time in minutes");
@@ -207,12 +224,25 @@ public class GraphicInterface extends JFrame {
         charPanel.add(alphabetCheckBox);
         charPanel.add(numbersCheckBox);
         charPanel.add(specialCheckBox);
+        charPanel.add(kochCheckBox);
         // character classes settings
 
         startButton = new JButton("Start");
         startButton.addActionListener(new Start());
+        pauseButton = new JButton("Pause");
+        pauseButton.setEnabled(false);
+        pauseButton.addActionListener((ActionEvent e) -> {
+            if (getSession().isPaused()) {
+                getSession().resume();
+                pauseButton.setText("Pause");
+            } else {
+                getSession().pause();
+                pauseButton.setText("Resume");
+            }
+        });
         startButtonPanel = new JPanel(new GridLayout());
         startButtonPanel.add(startButton);
+        startButtonPanel.add(pauseButton);
         startButtonPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         checkButton = new JButton("Check");
@@ -246,7 +276,7 @@ public class GraphicInterface extends JFrame {
         frameConstraints.gridy = 1;
         frameConstraints.gridwidth = 2;
         frameConstraints.gridheight = 1;
-        mainPanel.add(framesPerWavelength, frameConstraints);
+        mainPanel.add(frequency, frameConstraints);
 
         frameConstraints.gridx = 0;
         frameConstraints.gridy = 2;
@@ -279,13 +309,43 @@ public class GraphicInterface extends JFrame {
         frameConstraints.gridheight = 1;
         mainPanel.add(checkButtonPanel, frameConstraints);
 
+        statsLabel = new JLabel(" ");
+        statsLabel.setBorder(new EmptyBorder(5, 0, 0, 0));
+        frameConstraints.gridx = 0;
+        frameConstraints.gridy = 5;
+        frameConstraints.gridwidth = 4;
+        frameConstraints.gridheight = 1;
+        frameConstraints.weighty = 0;
+        mainPanel.add(statsLabel, frameConstraints);
+
         mainPanel.setSize(getPreferredSize());
         add(mainPanel);
         pack();
 
-        timerPlay = false; 
         buttonPlay = false;
 
+        new SwingWorker<ProgressStore, Void>() {
+            @Override
+            protected ProgressStore doInBackground() throws IOException {
+                return ProgressStore.open(ProgressStore.defaultDirectory());
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    progress = get();
+                    if (progress.getKochLevel() > 0) {
+                        // Koch method goes on where the last session left it
+                        koch.restore(progress.getKochLevel(), progress.getErrorRates());
+                        kochCheckBox.setText("Koch method (" + koch.getLevel() + ")");
+                    }
+                    showProgress();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Logger.getLogger(GraphicInterface.class.getName()).log(Level.WARNING, "Progress is not saved", ex);
+                }
+            }
+        }.execute();
+
     }
 
     /**
@@ -309,20 +369,6 @@ public class GraphicInterface extends JFrame {
         this.sourceFile = sourceFile;
     }
 
-    /**
-     * @return the writer
-     */
-    private Writer getWriter() {
-        return writer;
-    }
-
-    /**
-     * @param writer the writer to set
-     */
-    private void setWriter(Writer writer) {
-        this.writer = writer;
-    }
-
     /**
      * @return the generRadioButton
      */
@@ -366,10 +412,17 @@ public class GraphicInterface extends JFrame {
     }
 
     /**
-     * @return the framesPerWavelength
+     * @return the frequency
      */
-    public JSlider getFramesPerWavelength() {
-        return framesPerWavelength;
+    public JSlider getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return the excerptCheckBox
+     */
+    public JCheckBox getExcerptCheckBox() {
+        return excerptCheckBox;
     }
 
     /**
@@ -394,264 +447,122 @@ public class GraphicInterface extends JFrame {
     }
 
     /**
-     * @return the t1
+     * @return the session
      */
-    public Timer getT1() {
-        return t1;
+    public Session getSession() {
+        return session;
     }
 
     /**
-     * @param t1 the t1 to set
+     * @param session the session to set
      */
-    public void setT1(Timer t1) {
-        this.t1 = t1;
+    public void setSession(Session session) {
+        this.session = session;
     }
 
     /**
-     * @return the t2
+     * @return the cache
      */
-    public Timer getT2() {
-        return t2;
+    public WaveformCache getCache() {
+        return cache;
     }
 
     /**
-     * @param t2 the t2 to set
+     * @return the codebook, loaded in background by Morse.main()
      */
-    public void setT2(Timer t2) {
-        this.t2 = t2;
+    public Codebook getCodebook() {
+        return Codebook.getDefault();
     }
 
     /**
-     * @return the clip
-     */
-    public Sound getClip() {
-        return clip;
-    }
-
-    /**
-     * @param clip the clip to set
-     */
-    public void setClip(Sound clip) {
-        this.clip = clip;
-    }
-
-    /**
-     * @return the input
-     */
-    public InputStreamReader getInput() {
-        return input;
-    }
-
-    /**
-     * @param input the input to set
+     * @return the buttonPlay
      */
-    public void setInput(InputStreamReader input) {
-        this.input = input;
+    public Boolean getButtonPlay() {
+        return buttonPlay;
     }
 
     /**
-     * @return the timerPlay
+     * @param buttonPlay the buttonPlay to set
      */
-    public Boolean getTimerPlay() {
-        return timerPlay;
+    public void setButtonPlay(Boolean buttonPlay) {
+        this.buttonPlay = buttonPlay;
     }
 
     /**
-     * @param timerPlay the timerPlay to set
+     * Enables or disables check boxes of character classes, Koch method
+     * chooses characters on its own
      */
-    public void setTimerPlay(Boolean timerPlay) {
-        this.timerPlay = timerPlay;
+    private void setClassesEnabled(boolean enabled) {
+        alphabetCheckBox.setEnabled(enabled);
+        numbersCheckBox.setEnabled(enabled);
+        specialCheckBox.setEnabled(enabled);
     }
 
     /**
-     * @return the buttonPlay
+     * Closes the audio line together with the window
      */
-    public Boolean getButtonPlay() {
-        return buttonPlay;
+    @Override
+    public void dispose() {
+        audio.close();
+        super.dispose();
     }
 
     /**
-     * @param buttonPlay the buttonPlay to set
+     * Shows lifetime statistics from the progress store
      */
-    public void setButtonPlay(Boolean buttonPlay) {
-        this.buttonPlay = buttonPlay;
+    private void showProgress() {
+        if (progress.getSessions() == 0) {
+            statsLabel.setText("No checked sessions yet");
+        } else {
+            statsLabel.setText(String.format("Lifetime: %d sessions, %d characters, %.1f %% right, %.1f hours",
+                    progress.getSessions(), progress.getCharacters(), 100 * progress.getAccuracy(),
+                    progress.getPlayedMillis() / 3600000.0));
+        }
     }
 
     /**
-     * @return the createdFiles
+     * Shows running accuracy in the title of user input
      */
-    public List<File> getCreatedFiles() {
-        return createdFiles;
+    private void showAccuracy() {
+        TitledBorder border = (TitledBorder) scrollPane.getBorder();
+        if (liveChecker == null || liveChecker.getMatched() == 0) {
+            border.setTitle("User input");
+        } else {
+            border.setTitle(String.format("User input (%.1f %% right)", 100 * liveChecker.getAccuracy()));
+        }
+        scrollPane.repaint();
     }
 
     /**
-     * Class Beat reads characters from Source, translates them into morse code and plays them
+     * Passes every edit of user output to the live checker
      */
-    private class Beat implements ActionListener {
-
-        private final Deque<Boolean> morseQ; // Queue of translated characters
-        private final Deque<Integer> charQ; // Queue of input characters
-
-        private final Boolean write; // True if characters are generated
-
-        private int n; // number of played characters in a group of 5
-        Boolean readNext;
-
-        char[] morseChars;
-
-        /**
-         * Initializations of variables
-         *
-         * @param write = True if new characters are generated
-         */
-        public Beat(Boolean write) {
-            morseQ = new ArrayDeque<>();
-
-            for (int i = 0; i < 5; i++) {
-                morseQ.add(false);
-            }
+    private class Live implements DocumentListener {
 
-            charQ = new ArrayDeque<>();
-            n = 0;
-            readNext = true;
-            this.write = write;
-
-        }
-
-        /**
-         * Reads character from Source, translates it and puts it into queue
-         *
-         * @param e
-         */
         @Override
-        public void actionPerformed(ActionEvent e) {
-
-            if (charQ.size() < (5 - n) && (readNext)) {
-                // size of character queue is limited to currently played group of 5
-                try {
-                    int x = getInput().read(); 
-                    if (x == -1) { 
-                        readNext = false;
-                    } else {
-                        charQ.addLast(x);
-                    }
-                } catch (IOException ex) {
-                    Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-
-            if (!getTimerPlay()) {
-                readNext = false; 
-            }
-
-            if ((morseQ.size() < 20) && (charQ.size() > 0)) {
-                // the size of morse code queue is limited to 20 
-                try {
-                    int x = charQ.removeFirst(); 
-
-                    n = (n + 1) % 5; 
-
-                    morseChars = toMorse((char) x).toCharArray(); // translates character
-                    for (char morseChar : morseChars) {
-
-                        switch (morseChar) {
-                            case '.':
-                                morseQ.addLast(true);
-                                morseQ.addLast(false);
-                                break;
-
-                            case '-':
-                                morseQ.addLast(true);
-                                morseQ.addLast(true);
-                                morseQ.addLast(true);
-                                morseQ.addLast(false);
-                                break;
-                            case ' ':
-                                morseQ.addLast(false);
-                                morseQ.addLast(false);
-                                morseQ.addLast(false);
-                                morseQ.addLast(false);
-                                morseQ.addLast(false);
-                        }
-                    }
-                    morseQ.addLast(false);
-                    morseQ.addLast(false);
-
-                    if (write) {
-                        getWriter().write((char) x);
-                        // writes character to file for later check
-                    }
-
-                    if ((n == 0) && write) {
-                        for (int i = 0; i < 4; i++) {
-                            morseQ.addLast(false);
-                        }
-                        getWriter().write(' ');
-                    }
-
-                } catch (Exception e1) {
-                    e1.printStackTrace(System.err);
-                }
+        public void insertUpdate(DocumentEvent e) {
+            if (liveChecker == null) {
+                return;
             }
-
             try {
-                Boolean next = morseQ.removeFirst();
-
-                if (next) {
-                    if (!clip.getClip().isActive()) {
-                        getClip().getClip().loop(Clip.LOOP_CONTINUOUSLY);
-                    }
-                } else {
-                    if (getClip().getClip().isActive()) {
-                        getClip().getClip().stop();
-                    }
-                }
-            } catch (Exception e2) {
-                stop();
+                liveChecker.insert(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()));
+            } catch (BadLocationException ex) {
+                Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
             }
-
+            showAccuracy();
         }
 
-        /**
-         * Stops playing and resets program
-         */
-        private void stop() {
-            getT2().stop();
-            getStartButton().setText("Start");
-            getCheckButton().setEnabled(true);
-            setButtonPlay(false);
-            getClip().getClip().stop();
-            if (write) {
-                getWriter().close();
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            if (liveChecker == null) {
+                return;
             }
+            liveChecker.remove(e.getOffset(), e.getLength());
+            showAccuracy();
         }
 
-        /**
-         * Translates character to morse code
-         *
-         * @param alpha = character to translate
-         * @return = string of morse code
-         */
-        private String toMorse(char alpha) {
-            char[] alphanumArr = {'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L',
-                'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X',
-                'Y', 'Z', '1', '2', '3', '4', '5', '6', '7', '8', '9', '0', '/', '?', '=', ' '};
-
-            String[] morseArr = {".-", "-...", "-.-.", "-..", ".", "..-.", "--.", "....", "..",
-                ".---", "-.-", ".-..", "--", "-.", "---", ".--.", "--.-", ".-.",
-                "...", "-", "..-", "...-", ".--", "-..-", "-.--", "--..",
-                ".----", "..---", "...--", "....-", ".....", "-....", "--...",
-                "---..", "----.", "-----", "-..-.", "..--..", "-...-", " "};
-
-            int i = 0;
-            while ((i < alphanumArr.length) && alpha != alphanumArr[i]) {
-                i++;
-            }
-            if (i < alphanumArr.length) {
-                return morseArr[i];
-            } else {
-                return null;
-            }
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // attributes only
         }
     }
 
@@ -668,47 +579,63 @@ public class GraphicInterface extends JFrame {
         @Override
         public void actionPerformed(ActionEvent e) {
 
-            getInputTextArea().append("  ");
-
             String userString = getInputTextArea().getText(); // user output
-            if (userString == null || userString.isEmpty()) {
+            if (userString == null || userString.isEmpty() || getSession() == null) {
                 JOptionPane.showMessageDialog(rootPane, "There is nothing to check");
-            } else {
-
-                try (FileReader sourceFileReader = new FileReader(getSourceFile())) {
-                    getInputTextArea().append("\n");
-                    getInputTextArea().append("wrong | right - index\n");
-
-                    int i = 0;
-                    int x;
-                    int y;
-                    int misstakes = 0;
+                return;
+            }
 
-                    x = sourceFileReader.read();
-                    while ((x != -1) && (x != 10)) { 
+            // long copies are aligned off the event dispatch thread
+            Transcript played = getSession().getTranscript();
+            getCheckButton().setEnabled(false);
+            new SwingWorker<Checker.Result, Void>() {
+                @Override
+                protected Checker.Result doInBackground() {
+                    return Checker.check(played, userString);
+                }
 
-                        if (i >= userString.length()) {
-                            y = '_'; 
-                        } else {
-                            y = Character.toUpperCase(userString.charAt(i)); 
-                        }
-                        if (Character.toUpperCase(x) != y) { 
-                            misstakes++;
-                            getInputTextArea().append(String.format("%5s | %-5s - %d\n", String.valueOf((char) y), String.valueOf((char) x), i));
-                            // prints wrong character, correct character and index of mistake
+                @Override
+                protected void done() {
+                    getCheckButton().setEnabled(!getButtonPlay());
+                    try {
+                        Checker.Result result = get();
+                        if (kochSession && koch.update(result, played)) {
+                            kochCheckBox.setText("Koch method (" + koch.getLevel() + ")");
                         }
-                        i++;
-                        x = sourceFileReader.read();
+                        kochSession = false; // every session counts once
+                        saveProgress(getSession(), result);
+                        new ReportDialog(GraphicInterface.this, result).setVisible(true);
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
                     }
-
-                    getInputTextArea().append("Misstakes: " + misstakes); // number of mistakes
-                } catch (IOException ex) {
-                    Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
                 }
+            }.execute();
+        }
 
-            }
+    }
+
+    /**
+     * Saves the checked session and shows new totals once it is on disk
+     */
+    private void saveProgress(Session session, Checker.Result result) {
+        if (progress == null || session == savedSession) {
+            return;
         }
+        savedSession = session;
+        ProgressStore store = progress;
+        store.add(session, result);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws InterruptedException {
+                store.flush();
+                return null;
+            }
 
+            @Override
+            protected void done() {
+                showProgress();
+            }
+        }.execute();
     }
 
     /**
@@ -717,7 +644,8 @@ public class GraphicInterface extends JFrame {
     private class Start implements ActionListener {
 
         /**
-         * Initialization of classes Beat, Source, Sound and necessary variables
+         * Configures new Session from the settings in the window and starts it,
+         * or stops the playing session
          *
          * @param e
          */
@@ -731,29 +659,24 @@ public class GraphicInterface extends JFrame {
 
             if (getButtonPlay()) { 
 
-                setButtonPlay(false);
-                getT2().stop();
-                getT1().stop();
-                getClip().getClip().stop();
-                getStartButton().setText("Start");
-                getCheckButton().setEnabled(true);
-                getWriter().close();
+                getSession().stop(); // buttons are reset when the session finishes
 
             } else {
-                setClip(new Sound((int) getSampleRate().getSelectedItem(), getFramesPerWavelength().getValue()));
+                Session session = new Session(getCodebook(), getCache());
+                session.setSound(new Sound((int) getSampleRate().getSelectedItem(), getFrequency().getValue()));
+                session.setSpeed((int) getSpeedSpinner().getValue());
                 getInputTextArea().setText(""); 
-                if (getGenerRadioButton().isSelected()) {
+                liveChecker = new LiveChecker();
+                showAccuracy();
 
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
-                    String fileName = sdf.format(new Date());
-                    setSourceFile(new File(fileName));
-                    try {
-                        getSourceFile().createNewFile();
-                    } catch (IOException ex) {
-                        Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                    getCreatedFiles().add(getSourceFile());
-                    setWriter(new Writer(getSourceFile()));
+                kochSession = false;
+                if (getGenerRadioButton().isSelected() && kochCheckBox.isSelected()) {
+
+                    session.setSource(new Source(koch));
+                    session.setDuration((int) getTimeSpinner().getValue() * 60 * 1000);
+                    kochSession = true;
+
+                } else if (getGenerRadioButton().isSelected()) {
 
                     Boolean[] chars = {false, false, false};
                     if (getAlphabetCheckBox().isSelected()) {
@@ -766,34 +689,68 @@ public class GraphicInterface extends JFrame {
                         chars[2] = true;
                     }
 
-                    setInput(new InputStreamReader(new Source(chars)));
+                    session.setSource(new Source(chars));
+                    session.setDuration((int) getTimeSpinner().getValue() * 60 * 1000);
 
-                    setT1(new Timer((int) getTimeSpinner().getValue() * 60 * 1000, (ActionEvent e1) -> {
-                        setTimerPlay(false); 
-                        getT1().stop();
-                    }));
-                    getT1().start();
-                        
+                } else if (getExcerptCheckBox().isSelected()) {
+                    try {
+                        // the file is mapped and indexed once, then shared
+                        session.setSource(new Source(Corpus.open(getSourceFile()), 3, getCodebook()));
+                        session.setDuration((int) getTimeSpinner().getValue() * 60 * 1000);
 
+                    } catch (IOException ex) {
+                        Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
+                        JOptionPane.showMessageDialog(rootPane, "Cannot play excerpts: " + ex.getMessage(), "Source error", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
                 } else { 
                     try {
-                        setInput(new InputStreamReader(new Source(getSourceFile()))); 
+                        session.setSource(new Source(getSourceFile())); 
 
-                    } catch (FileNotFoundException ex) {
+                    } catch (IOException ex) {
                         Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
+                        JOptionPane.showMessageDialog(rootPane, "Cannot read the file: " + ex.getMessage(), "Source error", JOptionPane.WARNING_MESSAGE);
+                        return;
                     }
                 }
 
-                setTimerPlay(true);
-                setButtonPlay(true);
+                session.addListener(new SessionListener() {
+                    @Override
+                    public void played(int codePoint) {
+                        // one pending update catches up with all characters played meanwhile
+                        if (livePending.compareAndSet(false, true)) {
+                            SwingUtilities.invokeLater(() -> {
+                                livePending.set(false);
+                                if (liveChecker != null && getSession() == session) {
+                                    liveChecker.played(session.getTranscript());
+                                    showAccuracy();
+                                }
+                            });
+                        }
+                    }
 
-                int delay = 1200 / ((int) getSpeedSpinner().getValue());
-                Beat beat = new Beat(getGenerRadioButton().isSelected());
-                setT2(new Timer(delay, beat));
-                getT2().start();
-                // calculates speed and sets the second timer
+                    @Override
+                    public void finished() {
+                        SwingUtilities.invokeLater(() -> {
+                            getStartButton().setText("Start");
+                            getCheckButton().setEnabled(true);
+                            pauseButton.setEnabled(false);
+                            pauseButton.setText("Pause");
+                            setButtonPlay(false);
+                            Logger.getLogger(GraphicInterface.class.getName()).log(Level.INFO,
+                                    "Time to first tone: {0} ms", String.format("%.1f", audio.getFirstToneMillis()));
+                        });
+                    }
+                });
+                setSession(session);
+
+                setButtonPlay(true);
+                audio.setSound(session.getSound());
+                session.start(audio);
+                // the session plays on the audio thread
 
                 getStartButton().setText("Stop");
+                pauseButton.setEnabled(true);
                 getCheckButton().setEnabled(false);
             }
 
@@ -807,7 +764,9 @@ public class GraphicInterface extends JFrame {
         public Boolean sourceCheck() {
 
             if (getGenerRadioButton().isSelected()) {
-                if (getAlphabetCheckBox().isSelected()) {
+                if (kochCheckBox.isSelected()) {
+                    return true;
+                } else if (getAlphabetCheckBox().isSelected()) {
                     return true;
                 } else if (getNumbersCheckBox().isSelected()) {
                     return true;
@@ -823,56 +782,4 @@ public class GraphicInterface extends JFrame {
 
     }
 
-    /**
-     * Writes played character into a file for check
-     */
-    private class Writer {
-
-        File file;
-        FileWriter fw;
-
-        /**
-         * Creates FileWriter 
-         *
-         * @param file
-         */
-        public Writer(File file) {
-            try {
-                this.file = file;
-                fw = new FileWriter(file);
-            } catch (IOException ex) {
-                Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-
-        /**
-         * Writes character to a file
-         *
-         * @param a = character to write
-         */
-        public void write(char a) {
-            try {
-                fw.append(a);
-            } catch (IOException ex) {
-                try {
-                    fw.close();
-                } catch (IOException ex1) {
-                    Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex1);
-                }
-                Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-
-        /**
-         * Closes the output
-         */
-        public void close() {
-            try {
-                fw.close();
-            } catch (IOException ex) {
-                Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-    }
-
 }
@@ -0,0 +1,152 @@
+package morse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * JitterMeter collects keying timing errors of all outputs, one histogram
+ * for every speed. The error of a character is how far from its scheduled
+ * time it really starts playing. Inside a character the waveform is exact
+ * to a sample, so the start of a character is where timing can be lost.
+ *
+ * Recording is one atomic increment, outputs record every character.
+ *
+ * @author Matus Namesny
+ */
+public class JitterMeter {
+
+    /**
+     * Highest speed in words per minute with its own histogram, higher
+     * speeds are recorded with it
+     */
+    public static final int MAX_WPM = 100;
+
+    private static final JitterMeter DEFAULT = new JitterMeter();
+
+    private final AtomicReferenceArray<Histogram> histograms;
+
+    /**
+     * Creates meter with no recorded values
+     */
+    public JitterMeter() {
+        histograms = new AtomicReferenceArray<>(MAX_WPM + 1);
+    }
+
+    /**
+     * @return meter shared by all outputs in this JVM
+     */
+    public static JitterMeter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param wpm = speed in words per minute
+     * @return histogram of the speed, created when first needed
+     */
+    public Histogram get(int wpm) {
+        int i = Math.max(0, Math.min(wpm, MAX_WPM));
+        Histogram h = histograms.get(i);
+        if (h == null) {
+            histograms.compareAndSet(i, null, new Histogram());
+            h = histograms.get(i);
+        }
+        return h;
+    }
+
+    /**
+     * Writes one line for every speed with recorded values: speed, number
+     * of characters and 50th percentile, 99th percentile and maximum of the
+     * error in microseconds
+     *
+     * @param out = where the report is written
+     * @throws IOException
+     */
+    public void export(Appendable out) throws IOException {
+        out.append("wpm count p50_us p99_us max_us\n");
+        for (int i = 0; i <= MAX_WPM; i++) {
+            Histogram h = histograms.get(i);
+            if (h != null && h.getCount() > 0) {
+                out.append(String.format("%d %d %d %d %d%n", i, h.getCount(),
+                        h.getPercentile(50), h.getPercentile(99), h.getMax()));
+            }
+        }
+    }
+
+    /**
+     * Histogram of timing errors in microseconds. Buckets are exact up to 32
+     * and then 16 per power of 2, so percentiles are within about 6 %.
+     */
+    public static class Histogram {
+
+        private static final int BUCKETS = 16 * 60;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records timing error of one character
+         *
+         * @param nanos = how late (positive) or early (negative) the
+         * character started in nanoseconds
+         */
+        public void record(long nanos) {
+            long micros = Math.abs(nanos) / 1000;
+            counts.incrementAndGet(index(micros));
+            count.incrementAndGet();
+            if (micros > max.get()) {
+                max.accumulateAndGet(micros, Math::max);
+            }
+        }
+
+        /**
+         * @return number of recorded characters
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return the largest error in microseconds
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param percent = percentile between 0 and 100
+         * @return error in microseconds which the given percentage of
+         * characters did not exceed, lower bound of its bucket
+         */
+        public long getPercentile(double percent) {
+            long total = count.get();
+            long rank = (long) Math.ceil(total * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(value(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        private static int index(long micros) {
+            if (micros < 32) {
+                return (int) micros;
+            }
+            int e = 59 - Long.numberOfLeadingZeros(micros); // highest bit - 4
+            return Math.min(BUCKETS - 1, (e << 4) + (int) (micros >>> e));
+        }
+
+        private static long value(int index) {
+            if (index < 32) {
+                return index;
+            }
+            int e = (index >> 4) - 1;
+            return (long) ((index & 15) + 16) << e;
+        }
+    }
+}
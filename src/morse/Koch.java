@@ -0,0 +1,166 @@
+package morse;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Koch is the Koch method of learning: characters are played at full speed
+ * from the start, but only a few of them. When a check shows the user copies
+ * them well enough, the next character is added. Characters the user often
+ * gets wrong are played more often.
+ *
+ * The error rate of each character is a moving average over checks, so old
+ * results fade out. Weights are recomputed after each check and published
+ * as a new AliasTable, which Source reads without locking.
+ *
+ * @author Matus Namesny
+ */
+public class Koch {
+
+    /**
+     * Order in which characters are introduced
+     */
+    public static final String ORDER = "KMRSUAPTLOWI.NJEF0YV,G5/Q9ZH38B?427C1D6X";
+
+    /**
+     * Accuracy of a check needed to add the next character
+     */
+    public static final double THRESHOLD = 0.9;
+
+    /**
+     * Number of characters played from the start
+     */
+    public static final int START = 2;
+
+    /**
+     * Minimal number of played characters for a check to count
+     */
+    public static final int MIN_LENGTH = 25;
+
+    private static final double SMOOTHING = 0.3; // weight of the last check in the error rate
+    private static final double NEW_ERROR_RATE = 0.5; // assumed for a new character
+    private static final double ERROR_WEIGHT = 4; // weight of a character with errors only
+
+    private final int[] chars;
+    private final double[] errorRate;
+    private int level;
+    private volatile AliasTable table;
+
+    /**
+     * Starts with START characters of ORDER
+     */
+    public Koch() {
+        this(START);
+    }
+
+    /**
+     * @param level = number of characters of ORDER to start with, at least 1
+     */
+    public Koch(int level) {
+        chars = ORDER.codePoints().toArray();
+        errorRate = new double[chars.length];
+        Arrays.fill(errorRate, NEW_ERROR_RATE);
+        this.level = Math.max(1, Math.min(level, chars.length));
+        rebuild();
+    }
+
+    /**
+     * Updates error rates from a check, adds the next character if the user
+     * copied well. Sources may go on drawing meanwhile.
+     *
+     * @param result = result of the check
+     * @param played = characters played in the checked session
+     * @return true if a character was added
+     */
+    public synchronized boolean update(Checker.Result result, CharSequence played) {
+        int[] count = new int[chars.length];
+        int[] errors = new int[chars.length];
+        for (int i = 0; i < played.length(); i++) {
+            int k = ORDER.indexOf(played.charAt(i));
+            if (k >= 0) {
+                count[k]++;
+            }
+        }
+        for (Map.Entry<Character, Map<Character, Integer>> e : result.getConfusions().entrySet()) {
+            int k = ORDER.indexOf(e.getKey());
+            if (k >= 0) {
+                for (int n : e.getValue().values()) {
+                    errors[k] += n;
+                }
+            }
+        }
+        for (int k = 0; k < level; k++) {
+            if (count[k] > 0) {
+                double rate = Math.min(1, errors[k] / (double) count[k]);
+                errorRate[k] += SMOOTHING * (rate - errorRate[k]);
+            }
+        }
+
+        boolean added = false;
+        if (passed(result.getLength(), result.getMistakes().size()) && level < chars.length) {
+            level++;
+            added = true;
+        }
+        rebuild();
+        return added;
+    }
+
+    /**
+     * Continues from saved progress, the level is never lowered
+     *
+     * @param level = number of characters reached before
+     * @param errorRates = character -&gt; share of its plays copied wrong
+     */
+    public synchronized void restore(int level, Map<Character, Double> errorRates) {
+        this.level = Math.max(this.level, Math.min(level, chars.length));
+        errorRates.forEach((c, rate) -> {
+            int k = ORDER.indexOf(c);
+            if (k >= 0) {
+                errorRate[k] = rate;
+            }
+        });
+        rebuild();
+    }
+
+    /**
+     * @param length = number of checked characters
+     * @param mistakes = number of mistakes
+     * @return true if the check adds the next character
+     */
+    public static boolean passed(int length, int mistakes) {
+        return length >= MIN_LENGTH && 1 - mistakes / (double) length >= THRESHOLD;
+    }
+
+    /**
+     * @param random = generator of the calling thread
+     * @return code point of a random character of the current level
+     */
+    public int draw(SplittableRandom random) {
+        return table.draw(random);
+    }
+
+    /**
+     * @return number of characters being played
+     */
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param c = code point of a character
+     * @return moving average of error rate of the character between 0 and 1
+     */
+    public synchronized double getErrorRate(int c) {
+        int k = ORDER.indexOf(c);
+        return k < 0 ? 0 : errorRate[k];
+    }
+
+    private void rebuild() {
+        double[] weights = new double[level];
+        for (int k = 0; k < level; k++) {
+            weights[k] = 1 + ERROR_WEIGHT * errorRate[k];
+        }
+        table = new AliasTable(Arrays.copyOf(chars, level), weights);
+    }
+}
@@ -0,0 +1,354 @@
+package morse;
+
+import java.util.Arrays;
+
+/**
+ * LiveChecker grades user output while the user is still copying. It
+ * computes the edit distance of the whole user text against every prefix of
+ * the played characters bit-parallel (Myers, in the blocks of Hyyrö): a row
+ * of the table for one user character is kept as two bit vectors of +1 and
+ * -1 differences between neighbouring played characters, 64 characters in a
+ * long. A row costs about n / 64 steps, there is no band which the user
+ * could leave by dropping or adding many characters.
+ *
+ * Typing or deleting at the end of the text recomputes only the last few
+ * rows. Rows are saved every CHECKPOINT rows and an edit in the middle of
+ * the text is recomputed from the nearest saved row before it. Newly played
+ * characters change only the last block of every row. Played characters
+ * which the user has not copied yet are not counted as mistakes.
+ *
+ * Case does not matter and extra white space is free. LiveChecker is not
+ * thread safe, GraphicInterface uses it only on the event dispatch thread.
+ *
+ * @author Matus Namesny
+ */
+public class LiveChecker {
+
+    /**
+     * Number of rows between saved rows
+     */
+    public static final int CHECKPOINT = 64;
+
+    private char[] user = new char[256];
+    private int m; // number of user characters
+    private char[] played = new char[256];
+    private int n; // number of played characters
+
+    private int blocks = 1; // longs per row, bit c % 64 of block c / 64 is played character c
+    private char[] symbols = new char[64]; // open addressing table of played characters
+    private long[][] masks = new long[64][]; // positions of each played character
+    private int symbolCount;
+    private long[] none = new long[1]; // mask of a character which was not played
+
+    private long[] pv = new long[1]; // +1 differences of the computed row
+    private long[] mv = new long[1]; // -1 differences of the computed row
+    private int score; // cost of the computed row against no played characters
+    private int computed; // computed row
+    private byte[] carry = new byte[257]; // difference entering the last block in each row
+    private long[][] savedPv = new long[16][]; // rows CHECKPOINT, 2 * CHECKPOINT, ...
+    private long[][] savedMv = new long[16][];
+    private int[] savedScore = new int[16];
+    private int dirty; // first row which has to be computed again
+
+    private int distance;
+    private int matched; // number of played characters the user has reached
+
+    /**
+     * Creates checker with empty user output and no played characters
+     */
+    public LiveChecker() {
+        update();
+    }
+
+    /**
+     * User inserted text
+     *
+     * @param offset = position of the insertion
+     * @param text = inserted text
+     */
+    public void insert(int offset, CharSequence text) {
+        int len = text.length();
+        if (m + len > user.length) {
+            user = Arrays.copyOf(user, Math.max(user.length * 2, m + len));
+        }
+        System.arraycopy(user, offset, user, offset + len, m - offset);
+        for (int i = 0; i < len; i++) {
+            user[offset + i] = normalize(text.charAt(i));
+        }
+        m += len;
+        if (m + 1 > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, m + 1));
+        }
+        dirty = Math.min(dirty, offset + 1);
+        update();
+    }
+
+    /**
+     * User removed text
+     *
+     * @param offset = position of the removed text
+     * @param length = number of removed characters
+     */
+    public void remove(int offset, int length) {
+        System.arraycopy(user, offset + length, user, offset, m - offset - length);
+        m -= length;
+        dirty = Math.min(dirty, offset + 1);
+        update();
+    }
+
+    /**
+     * Reads characters which were played since the last call
+     *
+     * @param transcript = all played characters
+     */
+    public void played(CharSequence transcript) {
+        int length = transcript.length();
+        if (length <= n) {
+            return;
+        }
+        if (length > played.length) {
+            played = Arrays.copyOf(played, Math.max(played.length * 2, length));
+        }
+        int last = blocks - 1; // the first block which changes
+        int size = (length + 63) >>> 6;
+        if (size > blocks) {
+            grow(size);
+        }
+        for (int i = n; i < length; i++) {
+            played[i] = normalize(transcript.charAt(i));
+            mask(played[i])[i >>> 6] |= 1L << i;
+        }
+        n = length;
+
+        // lower blocks do not change, the others are computed again from row 0
+        for (int b = last; b < blocks; b++) {
+            pv[b] = -1L;
+            mv[b] = 0;
+        }
+        for (int j = 1; j <= m; j++) {
+            if (!skipped(j)) {
+                long[] eq = find(user[j - 1]);
+                int h = last == 0 ? 1 : carry[j];
+                for (int b = last; b < blocks; b++) {
+                    if (b == blocks - 1) {
+                        carry[j] = (byte) h;
+                    }
+                    h = step(b, eq[b], h);
+                }
+            }
+            if (j % CHECKPOINT == 0) {
+                int k = j / CHECKPOINT - 1;
+                System.arraycopy(pv, last, savedPv[k], last, blocks - last);
+                System.arraycopy(mv, last, savedMv[k], last, blocks - last);
+            }
+        }
+        measure();
+    }
+
+    /**
+     * @return share of reached played characters copied right, between 0 and 1
+     */
+    public double getAccuracy() {
+        return matched == 0 ? 1 : Math.max(0, 1 - distance / (double) matched);
+    }
+
+    /**
+     * @return number of mistakes so far
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return number of played characters the user has reached
+     */
+    public int getMatched() {
+        return matched;
+    }
+
+    /**
+     * Computes rows from the first changed one to the end of user text
+     */
+    private void update() {
+        if (dirty - 1 < computed || dirty == 0) {
+            int k = Math.max(0, dirty - 1) / CHECKPOINT;
+            if (k == 0) {
+                Arrays.fill(pv, -1L);
+                Arrays.fill(mv, 0);
+                score = 0;
+            } else {
+                System.arraycopy(savedPv[k - 1], 0, pv, 0, blocks);
+                System.arraycopy(savedMv[k - 1], 0, mv, 0, blocks);
+                score = savedScore[k - 1];
+            }
+            computed = k * CHECKPOINT;
+        }
+
+        for (int j = computed + 1; j <= m; j++) {
+            if (!skipped(j)) {
+                long[] eq = find(user[j - 1]);
+                int h = 1; // the row of no played characters grows by 1
+                for (int b = 0; b < blocks; b++) {
+                    if (b == blocks - 1) {
+                        carry[j] = (byte) h;
+                    }
+                    h = step(b, eq[b], h);
+                }
+                score++;
+            }
+            if (j % CHECKPOINT == 0) {
+                int k = j / CHECKPOINT;
+                if (k > savedPv.length) {
+                    savedPv = Arrays.copyOf(savedPv, savedPv.length * 2);
+                    savedMv = Arrays.copyOf(savedMv, savedMv.length * 2);
+                    savedScore = Arrays.copyOf(savedScore, savedScore.length * 2);
+                }
+                if (savedPv[k - 1] == null) {
+                    savedPv[k - 1] = new long[blocks];
+                    savedMv[k - 1] = new long[blocks];
+                }
+                System.arraycopy(pv, 0, savedPv[k - 1], 0, blocks);
+                System.arraycopy(mv, 0, savedMv[k - 1], 0, blocks);
+                savedScore[k - 1] = score;
+            }
+        }
+        computed = m;
+        dirty = m + 1;
+        measure();
+    }
+
+    /**
+     * Finds the cheapest cell of the last row, the user may have stopped
+     * anywhere in the played characters
+     */
+    private void measure() {
+        int cost = score;
+        distance = cost;
+        matched = 0;
+        for (int b = 0; b < blocks && b << 6 < n; b++) {
+            int bits = Math.min(64, n - (b << 6));
+            long valid = bits == 64 ? -1L : (1L << bits) - 1;
+            long p = pv[b] & valid;
+            long q = mv[b] & valid;
+            if (cost - Long.bitCount(q) >= distance) {
+                cost += Long.bitCount(p) - Long.bitCount(q); // no cheaper cell in this block
+                continue;
+            }
+            for (int k = 0; k < bits; k++) {
+                cost += (int) (p >>> k & 1) - (int) (q >>> k & 1);
+                if (cost < distance) {
+                    distance = cost;
+                    matched = (b << 6) + k + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances one block to the next row
+     *
+     * @param b = block
+     * @param eq = positions of the user character in the block
+     * @param h = difference entering the block from below, -1, 0 or 1
+     * @return difference leaving the block
+     */
+    private int step(int b, long eq, int h) {
+        long p = pv[b];
+        long q = mv[b];
+        long xv = eq | q;
+        if (h < 0) {
+            eq |= 1;
+        }
+        long xh = (((eq & p) + p) ^ p) | eq;
+        long ph = q | ~(xh | p);
+        long mh = p & xh;
+        int out = (int) (ph >>> 63) - (int) (mh >>> 63);
+        ph <<= 1;
+        mh <<= 1;
+        if (h < 0) {
+            mh |= 1;
+        } else if (h > 0) {
+            ph |= 1;
+        }
+        pv[b] = mh | ~(xv | ph);
+        mv[b] = ph & xv;
+        return out;
+    }
+
+    /**
+     * Extra white space is skipped, it costs nothing
+     */
+    private boolean skipped(int j) {
+        return user[j - 1] == ' ' && (j == 1 || user[j - 2] == ' ');
+    }
+
+    /**
+     * Makes rows, masks and saved rows longer
+     */
+    private void grow(int size) {
+        pv = Arrays.copyOf(pv, size);
+        mv = Arrays.copyOf(mv, size);
+        none = new long[size];
+        for (int s = 0; s < masks.length; s++) {
+            if (masks[s] != null) {
+                masks[s] = Arrays.copyOf(masks[s], size);
+            }
+        }
+        for (int k = 0; k < savedPv.length && savedPv[k] != null; k++) {
+            savedPv[k] = Arrays.copyOf(savedPv[k], size);
+            savedMv[k] = Arrays.copyOf(savedMv[k], size);
+        }
+        blocks = size;
+    }
+
+    /**
+     * @return positions of a played character
+     */
+    private long[] find(char c) {
+        int s = slot(c);
+        return masks[s] == null ? none : masks[s];
+    }
+
+    /**
+     * @return positions of a played character, created if it is new
+     */
+    private long[] mask(char c) {
+        int s = slot(c);
+        if (masks[s] == null) {
+            symbols[s] = c;
+            masks[s] = new long[blocks];
+            if (++symbolCount * 2 > symbols.length) {
+                rehash();
+                s = slot(c);
+            }
+        }
+        return masks[s];
+    }
+
+    private int slot(char c) {
+        int mask = symbols.length - 1;
+        int s = (c * 0x9E37) & mask;
+        while (masks[s] != null && symbols[s] != c) {
+            s = (s + 1) & mask;
+        }
+        return s;
+    }
+
+    private void rehash() {
+        char[] oldSymbols = symbols;
+        long[][] oldMasks = masks;
+        symbols = new char[oldSymbols.length * 2];
+        masks = new long[oldMasks.length * 2][];
+        for (int s = 0; s < oldSymbols.length; s++) {
+            if (oldMasks[s] != null) {
+                int t = slot(oldSymbols[s]);
+                symbols[t] = oldSymbols[s];
+                masks[t] = oldMasks[s];
+            }
+        }
+    }
+
+    private static char normalize(char c) {
+        return Character.isWhitespace(c) ? ' ' : Character.toUpperCase(c);
+    }
+}
@@ -0,0 +1,163 @@
+package morse;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics counts what all sessions in this JVM do and publishes it as an
+ * MBean. Counters are LongAdders, so sessions on many threads update them
+ * without contention and they can stay on in production. Gauges like queue
+ * depth are read from playing sessions only when a JMX client asks.
+ *
+ * @author Matus Namesny
+ */
+public class Metrics implements MetricsMBean {
+
+    /**
+     * Name of the MBean
+     */
+    public static final String NAME = "morse:type=Metrics";
+
+    private final LongAdder played = new LongAdder();
+    private final LongAdder underruns = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder lineOpens = new LongAdder();
+    private final LongAdder gradings = new LongAdder();
+    private final LongAdder gradingNanos = new LongAdder();
+    private final AtomicLong gradingMaxNanos = new AtomicLong();
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private volatile int wpm;
+    private volatile long firstToneNanos;
+    private volatile long windowNanos;
+
+    /**
+     * @return metrics of this JVM, registered as MBean when first used
+     */
+    public static Metrics getDefault() {
+        return Holder.DEFAULT_METRICS;
+    }
+
+    void started(Session session) {
+        sessions.add(session);
+        wpm = session.getSpeed();
+    }
+
+    void finished(Session session) {
+        sessions.remove(session);
+        underruns.add(session.getUnderruns());
+    }
+
+    void played() {
+        played.increment();
+    }
+
+    void stalled(long count) {
+        stalls.add(count);
+    }
+
+    void lineOpened() {
+        lineOpens.increment();
+    }
+
+    void windowShown(long nanos) {
+        windowNanos = nanos;
+    }
+
+    void firstTone(long nanos) {
+        firstToneNanos = nanos;
+    }
+
+    void graded(long nanos) {
+        gradings.increment();
+        gradingNanos.add(nanos);
+        gradingMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public long getCharactersPlayed() {
+        return played.sum();
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public int getCurrentWpm() {
+        return wpm;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Session session : sessions) {
+            depth += session.getQueueDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getUnderruns() {
+        return underruns.sum();
+    }
+
+    @Override
+    public long getStalls() {
+        return stalls.sum();
+    }
+
+    @Override
+    public long getLineOpens() {
+        return lineOpens.sum();
+    }
+
+    @Override
+    public double getTimeToWindowMillis() {
+        return windowNanos / 1e6;
+    }
+
+    @Override
+    public double getTimeToFirstToneMillis() {
+        return firstToneNanos / 1e6;
+    }
+
+    @Override
+    public long getGradings() {
+        return gradings.sum();
+    }
+
+    @Override
+    public double getGradingAverageMillis() {
+        long n = gradings.sum();
+        return n == 0 ? 0 : gradingNanos.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getGradingMaxMillis() {
+        return gradingMaxNanos.get() / 1e6;
+    }
+
+    private static class Holder {
+
+        private static final Metrics DEFAULT_METRICS = register();
+
+        private static Metrics register() {
+            Metrics metrics = new Metrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(NAME));
+            } catch (JMException ex) {
+                // counting works without JMX
+                Logger.getLogger(Metrics.class.getName()).log(Level.WARNING, null, ex);
+            }
+            return metrics;
+        }
+    }
+}
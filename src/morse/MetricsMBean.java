@@ -0,0 +1,73 @@
+package morse;
+
+/**
+ * Management interface of Metrics, visible in JConsole and other JMX tools
+ * as morse:type=Metrics
+ *
+ * @author Matus Namesny
+ */
+public interface MetricsMBean {
+
+    /**
+     * @return number of characters played by all sessions
+     */
+    long getCharactersPlayed();
+
+    /**
+     * @return number of sessions playing now
+     */
+    int getActiveSessions();
+
+    /**
+     * @return speed of the last started session in words per minute
+     */
+    int getCurrentWpm();
+
+    /**
+     * @return characters read ahead and waiting in all playing sessions
+     */
+    int getQueueDepth();
+
+    /**
+     * @return number of times an output ran out of data, over all finished
+     * sessions
+     */
+    long getUnderruns();
+
+    /**
+     * @return number of times a character was not read ahead in time
+     */
+    long getStalls();
+
+    /**
+     * @return number of times the sound card line was opened
+     */
+    long getLineOpens();
+
+    /**
+     * @return milliseconds from the start of main() until the window was
+     * shown, 0 without the window
+     */
+    double getTimeToWindowMillis();
+
+    /**
+     * @return milliseconds from the last start on the sound card until its
+     * first character was in the line
+     */
+    double getTimeToFirstToneMillis();
+
+    /**
+     * @return number of checks of user output
+     */
+    long getGradings();
+
+    /**
+     * @return average duration of a check in milliseconds
+     */
+    double getGradingAverageMillis();
+
+    /**
+     * @return longest duration of a check in milliseconds
+     */
+    double getGradingMaxMillis();
+}
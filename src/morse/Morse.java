@@ -3,36 +3,84 @@ package morse;
 import java.awt.Window;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.UnsupportedLookAndFeelException;
 
 /**
  * Morse class contains main() method
  *
+ * Startup shows the window first. The codebook, the sound system, saved
+ * progress and JMX metrics are initialized on background threads and the
+ * file chooser is created on first use. Time to window is logged and
+ * published in Metrics, time to first tone is logged after each session.
+ *
+ * With the system property morse.exitAfterShow=true the program exits as
+ * soon as the window is shown, which is the training run of the class data
+ * sharing archive (see profile cds in trainer/pom.xml).
+ *
  * @author Matus Namesny
  */
 public class Morse {
 
     /**
      * main() creates new thread with gui (located in GraphicInterface class)
-     * At the end the method cleans up all created files.
      *
      * @param args Command line arguments are not used
      */
     public static void main(String[] args) {
+        final long start = System.nanoTime();
+
+        // the codebook is needed only on Start, load it while the window is built
+        Thread init = new Thread(Codebook::getDefault, "morse-init");
+        init.setDaemon(true);
+        init.start();
+
         SwingUtilities.invokeLater(() -> {
+            try {
+                // before any component is created, so none is built twice
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException ex) {
+                Logger.getLogger(Morse.class.getName()).log(Level.SEVERE, null, ex);
+            }
+
             final GraphicInterface gi = new GraphicInterface();
+            gi.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    windowShown(System.nanoTime() - start);
+                }
+            });
             gi.setVisible(true);
             gi.addComponentListener(new ComponentAdapter() {
                 @Override
                 public void componentHidden(ComponentEvent e) {
-                    // Deletes file from list of temp files created during program run
-                    gi.getCreatedFiles().stream().forEach((file) -> { 
-                        file.delete();
-                    });
                     ((Window) (e.getComponent())).dispose(); // Closes the window
                 }
             });
         });
 
     }
+
+    /**
+     * Reports time to window, exits after the training run of the archive
+     */
+    private static void windowShown(long nanos) {
+        Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(null);
+        long sinceJvm = jvmStart == null ? -1 : Duration.between(jvmStart, Instant.now()).toMillis();
+        Logger.getLogger(Morse.class.getName()).log(Level.INFO, "Window shown {0} ms after main(), {1} ms after JVM start",
+                new Object[]{nanos / 1000000, sinceJvm});
+        if (Boolean.getBoolean("morse.exitAfterShow")) {
+            System.exit(0);
+        }
+        Thread t = new Thread(() -> Metrics.getDefault().windowShown(nanos), "morse-metrics");
+        t.setDaemon(true);
+        t.start();
+    }
 }
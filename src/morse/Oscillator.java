@@ -0,0 +1,58 @@
+package morse;
+
+/**
+ * Oscillator generates a sine wave of any frequency with a phase
+ * accumulator. The phase is a 32 bit integer where a full turn is 2^32, so
+ * it wraps around by itself and the frequency is exact to about 10 uHz at
+ * 48 kHz. Samples are read from a sine table with linear interpolation,
+ * nothing is allocated per sample.
+ *
+ * @author Matus Namesny
+ */
+public class Oscillator {
+
+    private static final int TABLE_BITS = 12;
+    private static final int FRACTION_BITS = 32 - TABLE_BITS;
+    private static final double FRACTION = 1.0 / (1 << FRACTION_BITS);
+    private static final float[] SINE = new float[(1 << TABLE_BITS) + 1];
+
+    static {
+        for (int i = 0; i < SINE.length; i++) {
+            SINE[i] = (float) Math.sin(2 * Math.PI * i / (1 << TABLE_BITS));
+        }
+    }
+
+    private final int increment; // phase step per frame
+    private int phase;
+
+    /**
+     * @param frequency = pitch in Hz
+     * @param sampleRate = frames per second
+     * @throws IllegalArgumentException if the frequency is not between 0 and
+     * half of the sample rate
+     */
+    public Oscillator(double frequency, int sampleRate) {
+        if (!(frequency > 0 && frequency < sampleRate / 2.0)) {
+            throw new IllegalArgumentException("Frequency " + frequency + " Hz cannot be played at " + sampleRate + " Hz");
+        }
+        long step = Math.round(frequency / sampleRate * 4294967296.0); // up to 2^31
+        increment = (int) step; // low 32 bits, 2^31 wraps around like the phase
+    }
+
+    /**
+     * Starts the wave again from phase 0
+     */
+    public void reset() {
+        phase = 0;
+    }
+
+    /**
+     * @return next sample between -1 and 1
+     */
+    public double next() {
+        int i = phase >>> FRACTION_BITS;
+        double f = (phase & ((1 << FRACTION_BITS) - 1)) * FRACTION;
+        phase += increment; // wraps around at a full turn
+        return SINE[i] + (SINE[i + 1] - SINE[i]) * f;
+    }
+}
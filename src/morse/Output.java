@@ -0,0 +1,55 @@
+package morse;
+
+/**
+ * Output plays rendered characters of a Session. AudioEngine plays them on
+ * the sound card, StreamOutput streams them to a client of PracticeServer.
+ *
+ * @author Matus Namesny
+ */
+public interface Output {
+
+    /**
+     * Starts playing, characters are taken from the feed until it returns
+     * null or stop() is called, then feed.done() is called
+     *
+     * @param feed = source of rendered characters
+     */
+    void start(AudioEngine.Feed feed);
+
+    /**
+     * Stops playing as soon as possible
+     */
+    void stop();
+
+    /**
+     * Pauses playing, the session continues after resume()
+     *
+     * @throws UnsupportedOperationException if the output cannot pause
+     */
+    default void pause() {
+        throw new UnsupportedOperationException("Output cannot pause");
+    }
+
+    /**
+     * Resumes paused playing
+     *
+     * @throws UnsupportedOperationException if the output cannot pause
+     */
+    default void resume() {
+        throw new UnsupportedOperationException("Output cannot pause");
+    }
+
+    /**
+     * @return number of times the output ran out of data and timing was lost
+     */
+    long getUnderruns();
+
+    /**
+     * Sets where timing errors of played characters are recorded, does
+     * nothing if the output does not measure them
+     *
+     * @param jitter = histogram of the speed of the session
+     */
+    default void setJitter(JitterMeter.Histogram jitter) {
+    }
+}
@@ -0,0 +1,383 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Pileup plays many stations at once, as in a contest pileup. Every station
+ * has its own Source, pitch, speed, amplitude and start delay, and all are
+ * mixed into one stream in the format of a Sound. Pileup is a Feed, so
+ * AudioEngine plays it live and StreamOutput streams it.
+ *
+ * Audio is mixed in blocks of BLOCK_MILLIS on the thread which calls next().
+ * Stations draw generated characters there too, a generated Source never
+ * blocks, so a pileup of any size needs no threads of its own. A station
+ * keys its characters with the timing of WaveformCache. Every element
+ * starts at phase 0, so a station renders its dot and dash once, with its
+ * amplitude and the raised cosine envelope, and adds them to the block
+ * while its key is down. Adding an element and converting the mix to 16
+ * bit samples are plain loops over arrays, which the JIT can compile to
+ * SIMD instructions. Amplitudes are fractions of full scale, the mix is
+ * clipped.
+ *
+ * @author Matus Namesny
+ */
+public class Pileup implements AudioEngine.Feed {
+
+    /**
+     * Length of a mixed block in milliseconds
+     */
+    public static final int BLOCK_MILLIS = 20;
+
+    private final Sound sound;
+    private final Codebook codebook;
+    private final long duration; // frames to play, 0 without limit
+    private final List<Station> stations = new ArrayList<>();
+
+    private final float[] mix;
+    private final short[] samples;
+    private final byte[] pcm;
+    private final ShortBuffer out;
+    private long frames; // frames mixed so far
+
+    /**
+     * @param sound = sample rate and format of the mix, its pitch is not used
+     * @param codebook = translation of characters to morse code
+     * @param durationMillis = length of the pileup, 0 to play until stopped
+     */
+    public Pileup(Sound sound, Codebook codebook, long durationMillis) {
+        this.sound = sound;
+        this.codebook = codebook;
+        duration = durationMillis * sound.getSampleRate() / 1000;
+        int block = sound.getSampleRate() * BLOCK_MILLIS / 1000;
+        mix = new float[block];
+        samples = new short[block];
+        pcm = new byte[block * 2];
+        out = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    /**
+     * Adds a station, stations are added before the pileup is played
+     *
+     * @param source = generated characters of the station, not shared
+     * @param frequency = pitch in Hz
+     * @param wpm = speed in words per minute
+     * @param amplitude = amplitude as a fraction of full scale
+     * @param delayMillis = silence before the first character
+     * @return the station
+     * @throws IllegalArgumentException if characters are read from a file,
+     * the mixing thread must not wait for it
+     */
+    public Station add(Source source, double frequency, int wpm, double amplitude, long delayMillis) {
+        if (!source.isGenerated()) {
+            throw new IllegalArgumentException("Stations of a pileup need generated characters");
+        }
+        Station station = new Station(source, frequency, wpm, amplitude, delayMillis);
+        stations.add(station);
+        return station;
+    }
+
+    /**
+     * Adds stations sending generated letters and digits with pitch between
+     * 400 and 900 Hz, speed between 18 and 35 wpm and start delay up to 3 s,
+     * their amplitudes add up to about 1
+     *
+     * @param count = number of stations
+     * @param random = source of station settings and of the seed of their
+     * sources
+     */
+    public void addRandom(int count, SplittableRandom random) {
+        Source letters = new Source(new Boolean[]{true, true, false}, random.nextLong());
+        for (int i = 0; i < count; i++) {
+            add(letters.split(),
+                    400 + random.nextInt(500), 18 + random.nextInt(18),
+                    (0.5 + random.nextDouble()) / Math.max(4, count), random.nextInt(3000));
+        }
+    }
+
+    /**
+     * @return stations in the order they were added
+     */
+    public List<Station> getStations() {
+        return stations;
+    }
+
+    /**
+     * Mixes next block of all stations. The returned buffer is reused by
+     * the next call.
+     *
+     * @return PCM of the block, null at the end
+     */
+    @Override
+    public byte[] next() {
+        if (duration > 0 && frames >= duration) {
+            return null;
+        }
+        boolean playing = false;
+        for (int i = 0; i < mix.length; i++) {
+            mix[i] = 0;
+        }
+        for (Station station : stations) {
+            playing |= station.mix(mix);
+        }
+        if (!playing) {
+            return null; // all sources have ended
+        }
+        for (int i = 0; i < mix.length; i++) {
+            samples[i] = (short) (Math.max(-1f, Math.min(1f, mix[i])) * 32767f);
+        }
+        out.clear();
+        out.put(samples);
+        frames += mix.length;
+        return pcm;
+    }
+
+    /**
+     * @return sample rate and format of the mix
+     */
+    public Sound getSound() {
+        return sound;
+    }
+
+    /**
+     * One station of a pileup, its state is used by the audio thread only
+     */
+    public class Station {
+
+        private final Source source;
+        private final Oscillator osc;
+        private final double frequency;
+        private final int wpm;
+        private final float amplitude;
+        private final int unit; // frames per unit
+        private final int rise; // frames of the rise and fall of an element
+        private final StringBuilder text = new StringBuilder();
+        private float[][] elements = new float[4][]; // rendered elements by units
+
+        private long delay; // frames of silence before the first character
+        private boolean ended;
+        private long code; // character being keyed
+        private int u; // next unit of the code
+        private int n; // number of played characters in a group of 5
+        private float[] element; // element being keyed, null in a gap
+        private int length; // frames of the current run
+        private int pos; // frames of the current run already mixed
+
+        private Station(Source source, double frequency, int wpm, double amplitude, long delayMillis) {
+            this.source = source;
+            osc = new Oscillator(frequency, sound.getSampleRate());
+            this.frequency = frequency;
+            this.wpm = wpm;
+            this.amplitude = (float) amplitude;
+            unit = WaveformCache.framesPerUnit(sound.getSampleRate(), wpm);
+            rise = Math.min((int) (sound.getSampleRate() * WaveformCache.RISE_MILLIS / 1000), unit / 3);
+            delay = delayMillis * sound.getSampleRate() / 1000;
+        }
+
+        /**
+         * Adds the station to a block
+         *
+         * @return false if the station has ended
+         */
+        private boolean mix(float[] mix) {
+            int f = (int) Math.min(delay, mix.length);
+            delay -= f;
+            while (f < mix.length && !ended) {
+                if (pos == length) {
+                    advance();
+                    continue;
+                }
+                int count = Math.min(length - pos, mix.length - f);
+                if (element != null) {
+                    float[] e = element;
+                    int from = pos - f;
+                    for (int j = f; j < f + count; j++) {
+                        mix[j] += e[from + j];
+                    }
+                }
+                f += count;
+                pos += count;
+            }
+            return !ended;
+        }
+
+        /**
+         * Starts the next run of units with the key down or up, takes the
+         * next character at the end of a code
+         */
+        private void advance() {
+            if (u == Codebook.units(code)) {
+                code = nextCode();
+                u = 0;
+                if (ended) {
+                    return;
+                }
+            }
+            boolean keyed = Codebook.isDown(code, u);
+            int start = u;
+            while (u < Codebook.units(code) && Codebook.isDown(code, u) == keyed) {
+                u++;
+            }
+            length = (u - start) * unit;
+            pos = 0;
+            element = keyed ? element(u - start) : null;
+        }
+
+        /**
+         * @return tone of an element with its envelope and amplitude,
+         * rendered on first use
+         */
+        private float[] element(int units) {
+            if (units >= elements.length) {
+                elements = Arrays.copyOf(elements, units + 1);
+            }
+            if (elements[units] == null) {
+                float[] e = new float[units * unit];
+                osc.reset(); // every element starts at phase 0, as in WaveformCache
+                for (int j = 0; j < e.length; j++) {
+                    e[j] = (float) (amplitude * osc.next() * WaveformCache.envelope(j, e.length, rise));
+                }
+                elements[units] = e;
+            }
+            return elements[units];
+        }
+
+        /**
+         * @return code of the next character, groups of 5 are separated by a
+         * space as in Beat
+         */
+        private long nextCode() {
+            if (n == 5) {
+                n = 0;
+                text.append(' ');
+                return Codebook.SPACE;
+            }
+            int x;
+            long c;
+            do {
+                try {
+                    x = source.read();
+                } catch (IOException ex) {
+                    Logger.getLogger(Pileup.class.getName()).log(Level.SEVERE, null, ex);
+                    x = -1;
+                }
+                if (x == -1) {
+                    ended = true;
+                    return Codebook.NONE;
+                }
+                c = codebook.encode(x);
+            } while (c == Codebook.NONE); // characters without morse code are skipped
+            if (x == ' ') {
+                n = 0;
+            } else {
+                n++;
+            }
+            text.appendCodePoint(x);
+            return c;
+        }
+
+        /**
+         * @return characters keyed so far, groups separated by spaces
+         */
+        public String getText() {
+            return text.toString();
+        }
+
+        /**
+         * @return pitch in Hz
+         */
+        public double getFrequency() {
+            return frequency;
+        }
+
+        /**
+         * @return speed in words per minute
+         */
+        public int getWpm() {
+            return wpm;
+        }
+
+        /**
+         * @return amplitude as a fraction of full scale
+         */
+        public double getAmplitude() {
+            return amplitude;
+        }
+    }
+
+    /**
+     * Plays a pileup of generated stations, or writes it to a WAV file
+     *
+     * @param args = number of stations (default 20), seconds (default 60),
+     * sample rate (default 48000) and optionally a WAV file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 48000;
+        File file = args.length > 3 ? new File(args[3]) : null;
+
+        Sound sound = new Sound(rate, Sound.DEFAULT_FREQUENCY);
+        Pileup pileup = new Pileup(sound, Codebook.getDefault(), seconds * 1000L);
+        pileup.addRandom(count, new SplittableRandom());
+
+        long start = System.nanoTime();
+        long underruns = 0;
+        if (file != null) {
+            AudioInputStream in = new AudioInputStream(new InputStream() {
+                private byte[] block = new byte[0];
+                private int pos;
+
+                @Override
+                public int read() {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (pos == block.length) {
+                        block = pileup.next();
+                        pos = 0;
+                        if (block == null) {
+                            block = new byte[0];
+                            return -1;
+                        }
+                    }
+                    int n = Math.min(len, block.length - pos);
+                    System.arraycopy(block, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+            }, sound.getFormat(), seconds * (long) rate);
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, file);
+        } else {
+            AudioEngine engine = new AudioEngine(sound, AudioEngine.DEFAULT_BUFFER_MILLIS);
+            engine.open();
+            engine.start(pileup);
+            while (engine.isRunning()) {
+                Thread.sleep(100);
+            }
+            underruns = engine.getUnderruns();
+            engine.close();
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        Logger.getLogger(Pileup.class.getName()).log(Level.INFO, "{0} stations, {1} s at {2} Hz in {3} ms, {4} underruns",
+                new Object[]{count, seconds, rate, millis, underruns});
+    }
+}
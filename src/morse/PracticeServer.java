@@ -0,0 +1,299 @@
+package morse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PracticeServer hosts many practice sessions in one JVM over HTTP. Every
+ * request to /session starts a new session with generated characters and
+ * streams it to the client in real time, as WAV audio or as server-sent
+ * events with played characters (mode=events).
+ *
+ * Parameters: chars (any of l, n, s for letters, numbers and special
+ * characters, default l), wpm (default 20), rate (sample rate, default
+ * 11025), freq (pitch in Hz, default 600), minutes (1 to 60, default 5),
+ * mode (audio or events, default audio). /jitter returns timing errors of
+ * played characters by speed, see JitterMeter.
+ *
+ * /pileup streams a Pileup as WAV audio. Parameters: stations (default 20,
+ * at most MAX_STATIONS), rate (default 48000), minutes (1 to 60, default 5)
+ * and seed of the stations (random by default). A pileup counts as one
+ * session.
+ *
+ * Every session plays on its own thread. On Java 21 and newer these are
+ * virtual threads, otherwise platform threads with a small stack
+ * (STACK_SIZE). Generated characters are read on that thread, a session
+ * starts no other thread. Waveforms are rendered once into one cache shared
+ * by all sessions (CACHE_BYTES), so memory of one session is its thread
+ * stack, its Session, Beat and Source objects (well under 1 kB), its
+ * Transcript (2 bytes per played character, at most 4 kB in 5 minutes at
+ * 60 wpm) and the buffers of its HTTP connection.
+ *
+ * @author Matus Namesny
+ */
+public class PracticeServer {
+
+    public static final int DEFAULT_PORT = 8000;
+    public static final int DEFAULT_MAX_SESSIONS = 1000;
+
+    /**
+     * Maximal number of stations of one pileup
+     */
+    public static final int MAX_STATIONS = 50;
+
+    /**
+     * Stack size of session threads when virtual threads are not available
+     */
+    public static final long STACK_SIZE = 256 * 1024;
+
+    /**
+     * Size of waveform cache shared by all sessions
+     */
+    public static final long CACHE_BYTES = 64 * 1024 * 1024;
+
+    private final HttpServer server;
+    private final int maxSessions;
+    private final AtomicInteger activeSessions;
+
+    private final Codebook codebook;
+    private final WaveformCache cache;
+    private final ThreadFactory threads;
+
+    /**
+     * @param port = TCP port to listen on
+     * @param maxSessions = maximal number of sessions played at once
+     * @throws IOException
+     */
+    public PracticeServer(int port, int maxSessions) throws IOException {
+        this.maxSessions = maxSessions;
+        activeSessions = new AtomicInteger();
+        codebook = Codebook.getDefault();
+        cache = new WaveformCache(CACHE_BYTES);
+        threads = sessionThreads();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/session", this::session);
+        server.createContext("/pileup", this::pileup);
+        server.createContext("/jitter", (HttpExchange exchange) -> {
+            StringBuilder report = new StringBuilder();
+            JitterMeter.getDefault().export(report);
+            reply(exchange, 200, report.toString());
+        });
+    }
+
+    /**
+     * Starts accepting sessions
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, playing sessions are dropped
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * @return number of sessions being played
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Starts new session for a request
+     */
+    private void session(HttpExchange exchange) throws IOException {
+        Map<String, String> params;
+        Session session;
+        Sound sound;
+        try {
+            params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String chars = params.getOrDefault("chars", "l");
+            Boolean[] classes = {chars.contains("l"), chars.contains("n"), chars.contains("s")};
+            if (!classes[0] && !classes[1] && !classes[2]) {
+                throw new IllegalArgumentException("No characters selected");
+            }
+            int rate = Integer.parseInt(params.getOrDefault("rate", "11025"));
+            double freq = Double.parseDouble(params.getOrDefault("freq", "600"));
+            int wpm = Integer.parseInt(params.getOrDefault("wpm", "20"));
+            int minutes = Integer.parseInt(params.getOrDefault("minutes", "5"));
+            if (rate < 8000 || rate > 48000 || freq < 100 || freq > 3000 || wpm < 5 || wpm > 60
+                    || minutes < 1 || minutes > 60) {
+                throw new IllegalArgumentException("Parameter out of range");
+            }
+            sound = new Sound(rate, freq);
+            session = new Session(codebook, cache);
+            session.setSource(new Source(classes));
+            session.setSound(sound);
+            session.setSpeed(wpm);
+            session.setThreadFactory(threads);
+            session.setDuration(minutes * 60 * 1000L);
+        } catch (IllegalArgumentException ex) {
+            reply(exchange, 400, ex.getMessage());
+            return;
+        }
+
+        if (activeSessions.incrementAndGet() > maxSessions) {
+            activeSessions.decrementAndGet();
+            reply(exchange, 503, "Too many sessions");
+            return;
+        }
+
+        boolean started = false;
+        try {
+            boolean audio = !"events".equals(params.get("mode"));
+            exchange.getResponseHeaders().set("Content-Type", audio ? "audio/wav" : "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // chunked
+
+            StreamOutput output = new StreamOutput(exchange.getResponseBody(), sound, audio, threads);
+            session.addListener(output);
+            session.addListener(new SessionListener() {
+                @Override
+                public void finished() {
+                    activeSessions.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            session.start(output);
+            started = true;
+        } finally {
+            if (!started) { // the session will not finish, it never started
+                activeSessions.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Streams new pileup for a request
+     */
+    private void pileup(HttpExchange exchange) throws IOException {
+        Pileup pileup;
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            int stations = Integer.parseInt(params.getOrDefault("stations", "20"));
+            int rate = Integer.parseInt(params.getOrDefault("rate", "48000"));
+            int minutes = Integer.parseInt(params.getOrDefault("minutes", "5"));
+            if (stations < 1 || stations > MAX_STATIONS || rate < 8000 || rate > 48000
+                    || minutes < 1 || minutes > 60) {
+                throw new IllegalArgumentException("Parameter out of range");
+            }
+            pileup = new Pileup(new Sound(rate, Sound.DEFAULT_FREQUENCY), codebook, minutes * 60 * 1000L);
+            pileup.addRandom(stations, params.containsKey("seed")
+                    ? new SplittableRandom(Long.parseLong(params.get("seed"))) : new SplittableRandom());
+        } catch (IllegalArgumentException ex) {
+            reply(exchange, 400, ex.getMessage());
+            return;
+        }
+
+        if (activeSessions.incrementAndGet() > maxSessions) {
+            activeSessions.decrementAndGet();
+            pileup.done();
+            reply(exchange, 503, "Too many sessions");
+            return;
+        }
+
+        boolean started = false;
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "audio/wav");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // chunked
+
+            StreamOutput output = new StreamOutput(exchange.getResponseBody(), pileup.getSound(), true, threads);
+            output.start(new AudioEngine.Feed() {
+                @Override
+                public byte[] next() {
+                    return pileup.next();
+                }
+
+                @Override
+                public void done() {
+                    pileup.done();
+                    activeSessions.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            started = true;
+        } finally {
+            if (!started) {
+                pileup.done();
+                activeSessions.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a parameter is not properly
+     * encoded
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int i = pair.indexOf('=');
+            if (i > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, i), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(i + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Virtual threads when the runtime has them, small platform threads
+     * otherwise
+     */
+    private static ThreadFactory sessionThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            AtomicInteger n = new AtomicInteger();
+            return (Runnable r) -> {
+                Thread t = new Thread(null, r, "morse-session-" + n.incrementAndGet(), STACK_SIZE);
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+
+    /**
+     * Runs the server
+     *
+     * @param args = port and maximal number of sessions, both optional
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int max = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        PracticeServer server = new PracticeServer(port, max);
+        server.start();
+        Logger.getLogger(PracticeServer.class.getName()).log(Level.INFO, "Practice server listening on port {0}", port);
+    }
+}
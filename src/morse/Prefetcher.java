@@ -0,0 +1,197 @@
+package morse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prefetcher reads characters from Source on its own thread, skips those
+ * without morse code and keeps them encoded in a bounded queue, so the
+ * audio thread never waits for the disk. The queue has one producer and
+ * one consumer and needs no locks: each side writes only its own index.
+ *
+ * A generated Source never waits for the disk. With lookahead 0 there is
+ * no queue and no thread, poll() reads the next character itself.
+ *
+ * @author Matus Namesny
+ */
+public class Prefetcher implements Runnable {
+
+    /**
+     * Returned by poll() when the queue is empty but more characters follow
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * Returned by poll() when all characters have been taken
+     */
+    public static final int END = -2;
+
+    private final Reader input;
+    private final Codebook codebook;
+
+    private final int[] chars;
+    private final long[] codes;
+    private final int mask;
+    private volatile long head; // next index to take, written by consumer
+    private volatile long tail; // next index to fill, written by producer
+
+    private long code; // code of the last taken character, consumer only
+    private long stalls; // polls on empty queue, consumer only
+
+    private Thread thread;
+    private volatile boolean waiting; // producer is parked on full queue
+    private volatile boolean ended; // producer has added its last character
+    private volatile boolean closed;
+
+    /**
+     * @param input = characters to play
+     * @param codebook = translation of characters to morse code
+     * @param lookahead = number of characters read ahead, rounded up to a
+     * power of 2, 0 to read on the thread which polls
+     */
+    public Prefetcher(Reader input, Codebook codebook, int lookahead) {
+        this.input = input;
+        this.codebook = codebook;
+        int c = lookahead == 0 ? 0 : Integer.highestOneBit(Math.max(1, lookahead - 1)) << 1;
+        chars = new int[c];
+        codes = new long[c];
+        mask = c - 1;
+    }
+
+    /**
+     * Starts reading on a new thread, does nothing without a queue
+     *
+     * @param threads = factory of the reading thread
+     */
+    public void start(ThreadFactory threads) {
+        if (chars.length > 0) {
+            thread = threads.newThread(this);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops reading, characters in the queue can still be taken
+     */
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Reading loop, parks while the queue is full
+     */
+    @Override
+    public void run() {
+        try {
+            int x;
+            while (!closed && (x = input.read()) != -1) {
+                long c = codebook.encode(x);
+                if (c == Codebook.NONE) {
+                    continue; // characters without morse code are skipped
+                }
+                long t = tail;
+                while (t - head == chars.length) {
+                    waiting = true;
+                    if (t - head == chars.length && !closed) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    if (closed) {
+                        return;
+                    }
+                }
+                chars[(int) t & mask] = x;
+                codes[(int) t & mask] = c;
+                tail = t + 1; // publishes the slot to the consumer
+            }
+        } catch (IOException ex) {
+            if (!closed) { // the source may be closed under a late read
+                Logger.getLogger(Prefetcher.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } finally {
+            ended = true;
+        }
+    }
+
+    /**
+     * Takes next character, never blocks. Called from the audio thread.
+     *
+     * @return code point of the character, EMPTY if none is ready yet or END
+     */
+    public int poll() {
+        if (chars.length == 0) {
+            return read();
+        }
+        long h = head;
+        if (h == tail) {
+            // ended is set after the last tail, read tail again
+            if (ended && h == tail) {
+                return END;
+            }
+            stalls++;
+            return EMPTY;
+        }
+        int x = chars[(int) h & mask];
+        code = codes[(int) h & mask];
+        head = h + 1;
+        if (waiting && tail - head <= mask / 2) {
+            LockSupport.unpark(thread);
+        }
+        return x;
+    }
+
+    /**
+     * Reads next character with morse code on the calling thread
+     *
+     * @return code point of the character or END
+     */
+    private int read() {
+        try {
+            int x;
+            while (!closed && (x = input.read()) != -1) {
+                code = codebook.encode(x);
+                if (code != Codebook.NONE) {
+                    return x;
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Prefetcher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return END;
+    }
+
+    /**
+     * @return morse code of the character returned by the last poll()
+     */
+    public long getCode() {
+        return code;
+    }
+
+    /**
+     * @return number of characters ready in the queue
+     */
+    public int getDepth() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return size of the queue
+     */
+    public int getCapacity() {
+        return chars.length;
+    }
+
+    /**
+     * @return number of polls which found the queue empty
+     */
+    public long getStalls() {
+        return stalls;
+    }
+}
@@ -0,0 +1,467 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * ProgressStore keeps results of checked sessions across runs of the
+ * program. Every session is appended as one binary record to
+ * sessions.log: its settings, seed, the played classes of characters, Koch
+ * level or file and excerpt length, so the session can be played again,
+ * its timing, how many times each character was played and what the user
+ * wrote instead. The log starts with MAGIC and VERSION, a log of another
+ * version is kept aside as sessions.log.old and a new one is started.
+ * Totals over all records are kept in a small sessions.idx, so lifetime
+ * statistics are loaded in milliseconds however long the log is.
+ *
+ * Records are written on a background thread, all records waiting at that
+ * moment in one write. Each record carries a CRC32. The log is forced to
+ * disk before the index is replaced, and the index says how much of the
+ * log it covers. After a crash, records behind the covered part are read
+ * again and a torn record at the end is cut off.
+ *
+ * @author Matus Namesny
+ */
+public class ProgressStore {
+
+    private static final int MAGIC = 0x4D535458; // MSTX
+    private static final int VERSION = 2;
+    private static final int INDEX_VERSION = 3; // totals with the Koch level
+    private static final int LOG_HEADER = 8; // MAGIC and VERSION
+    private static final int HEADER = 8; // length and CRC of a record
+    private static final int KOCH_LEVEL = 8 + 8 + 4 + 4 + 4 + 1 + 1; // offset of the Koch level in a record
+    private static final int SETTINGS = KOCH_LEVEL + 2 + 2 + 8; // fixed fields before the file name
+    private static final int TOTALS = 8 + 4 + 4; // played time, characters and mistakes
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread t = new Thread(r, "morse-progress");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File log;
+    private final File index;
+    private final List<ByteBuffer> pending;
+
+    // totals of records in the log, guarded by this
+    private long covered; // length of the log included in totals
+    private long sessions;
+    private long characters;
+    private long mistakes;
+    private long playedMillis;
+    private int kochLevel; // highest level reached by the Koch method
+    private final Map<Character, long[]> chars; // played, wrong
+
+    private ProgressStore(File dir) {
+        log = new File(dir, "sessions.log");
+        index = new File(dir, "sessions.idx");
+        pending = new ArrayList<>();
+        chars = new TreeMap<>();
+    }
+
+    /**
+     * @return directory .morse in the home directory of the user
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty("user.home"), ".morse");
+    }
+
+    /**
+     * Opens the store in a directory, creates it if needed
+     *
+     * @param dir = directory of the log and the index
+     * @return the store with totals of all saved sessions
+     * @throws IOException if the directory cannot be created or the log
+     * cannot be read
+     */
+    public static ProgressStore open(File dir) throws IOException {
+        Files.createDirectories(dir.toPath());
+        ProgressStore store = new ProgressStore(dir);
+        store.load();
+        return store;
+    }
+
+    /**
+     * Saves a checked session in background
+     *
+     * @param session = the finished session
+     * @param result = result of its check
+     */
+    public void add(Session session, Checker.Result result) {
+        Map<Character, Integer> played = new TreeMap<>();
+        Transcript transcript = session.getTranscript();
+        for (int i = 0; i < transcript.length(); i++) {
+            char c = transcript.charAt(i);
+            if (c != ' ') {
+                played.merge(c, 1, Integer::sum);
+            }
+        }
+        int pairs = 0;
+        for (Map<Character, Integer> wrongs : result.getConfusions().values()) {
+            pairs += wrongs.size();
+        }
+        Source source = session.getSource();
+        File file = source.getFile();
+        byte[] path = file == null ? new byte[0] : file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        if (path.length > 0xFFFF) {
+            path = new byte[0]; // not a path of any file system
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + SETTINGS + 2 + path.length + TOTALS
+                + 2 + played.size() * 6 + 2 + pairs * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER);
+        buf.putLong(System.currentTimeMillis());
+        buf.putLong(session.getSeed());
+        buf.putInt(session.getSpeed());
+        buf.putInt(session.getSound().getSampleRate());
+        buf.putFloat((float) session.getSound().getFrequency());
+        buf.put((byte) (source.isGenerated() ? 1 : 0));
+        buf.put((byte) source.getClasses());
+        buf.putShort((short) source.getKochLevel());
+        buf.putShort((short) source.getSentences());
+        buf.putLong(session.getDuration());
+        buf.putShort((short) path.length).put(path);
+        buf.putLong(session.getPlayedMillis());
+        buf.putInt(result.getLength());
+        buf.putInt(result.getMistakes().size());
+        buf.putShort((short) played.size());
+        played.forEach((c, count) -> buf.putChar(c).putInt(count));
+        buf.putShort((short) pairs);
+        result.getConfusions().forEach((right, wrongs) -> wrongs.forEach((wrong, count) -> {
+            buf.putChar(right).putChar(wrong).putInt(count);
+        }));
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER, buf.position() - HEADER);
+        buf.putInt(0, buf.position() - HEADER).putInt(4, (int) crc.getValue());
+        buf.flip();
+
+        synchronized (pending) {
+            pending.add(buf);
+            if (pending.size() == 1) {
+                WRITER.execute(this::write); // later records join this write
+            }
+        }
+    }
+
+    /**
+     * Waits until all added sessions are on disk
+     *
+     * @throws InterruptedException
+     */
+    public void flush() throws InterruptedException {
+        try {
+            WRITER.submit(() -> {
+            }).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException ex) {
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * @return number of saved sessions
+     */
+    public synchronized long getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return number of played characters in all sessions
+     */
+    public synchronized long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return number of mistakes in all sessions
+     */
+    public synchronized long getMistakes() {
+        return mistakes;
+    }
+
+    /**
+     * @return share of all played characters copied right, between 0 and 1
+     */
+    public synchronized double getAccuracy() {
+        return characters == 0 ? 1 : Math.max(0, 1 - mistakes / (double) characters);
+    }
+
+    /**
+     * @return time of all sessions in milliseconds
+     */
+    public synchronized long getPlayedMillis() {
+        return playedMillis;
+    }
+
+    /**
+     * @return highest number of Koch characters reached, 0 without Koch
+     * sessions
+     */
+    public synchronized int getKochLevel() {
+        return kochLevel;
+    }
+
+    /**
+     * @return played character -&gt; share of its plays copied wrong
+     */
+    public synchronized Map<Character, Double> getErrorRates() {
+        Map<Character, Double> rates = new TreeMap<>();
+        chars.forEach((c, counts) -> {
+            if (counts[0] > 0) {
+                rates.put(c, Math.min(1, counts[1] / (double) counts[0]));
+            }
+        });
+        return rates;
+    }
+
+    /**
+     * Appends waiting records, forces them to disk and replaces the index
+     */
+    private void write() {
+        ByteBuffer[] batch;
+        synchronized (pending) {
+            batch = pending.toArray(new ByteBuffer[0]);
+            pending.clear();
+        }
+        try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position;
+            synchronized (this) {
+                position = covered;
+            }
+            channel.position(position);
+            if (position == 0) {
+                ByteBuffer header = logHeader();
+                while (header.hasRemaining()) {
+                    position += channel.write(header);
+                }
+            }
+            for (ByteBuffer buf : batch) {
+                while (buf.hasRemaining()) {
+                    position += channel.write(buf);
+                }
+            }
+            channel.force(false);
+            synchronized (this) {
+                for (ByteBuffer buf : batch) {
+                    apply(buf.position(HEADER));
+                }
+                covered = position;
+            }
+            saveIndex();
+        } catch (IOException ex) {
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.SEVERE, "Cannot save progress " + log, ex);
+        }
+    }
+
+    /**
+     * Loads totals from the index and adds records which the index does not
+     * cover yet
+     */
+    private synchronized void load() throws IOException {
+        if (log.length() >= LOG_HEADER && !hasLogHeader()) {
+            File old = new File(log.getPath() + ".old");
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, "Moving {0} of another version to {1}",
+                    new Object[]{log, old});
+            Files.move(log.toPath(), old.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!loadIndex() || covered > log.length()) {
+            // no index or it belongs to another log, read the whole log
+            covered = 0;
+            sessions = 0;
+            characters = 0;
+            mistakes = 0;
+            playedMillis = 0;
+            kochLevel = 0;
+            chars.clear();
+        }
+        if (log.length() < LOG_HEADER) {
+            covered = 0; // no record yet, the header is written with the first
+            return;
+        }
+        covered = Math.max(covered, LOG_HEADER);
+        if (log.length() == covered) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // read into the heap, a file cannot be truncated under a live mapping on every system
+            long size = channel.size();
+            long end = covered; // end of the last whole record
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer record = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            while (read(channel, header.clear(), end)) {
+                int length = header.getInt(0);
+                int sum = header.getInt(4);
+                if (length < 0 || length > size - end - HEADER) {
+                    break;
+                }
+                if (record.capacity() < length) {
+                    record = ByteBuffer.allocate(Math.max(length, record.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                record.clear().limit(length);
+                if (!read(channel, record, end + HEADER)) {
+                    break;
+                }
+                crc.reset();
+                crc.update(record.array(), 0, length);
+                if ((int) crc.getValue() != sum) {
+                    break;
+                }
+                apply(record.position(0));
+                end += HEADER + length;
+            }
+            if (end < size) {
+                Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, "Cutting {0} bytes of a broken record from {1}",
+                        new Object[]{size - end, log});
+                channel.truncate(end);
+            }
+            covered = end;
+        }
+        saveIndex();
+    }
+
+    /**
+     * Fills a buffer from a position of the log
+     *
+     * @return false if the log ends first
+     */
+    private static boolean read(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a record to the totals
+     *
+     * @param buf = record without its header
+     */
+    private void apply(ByteBuffer buf) {
+        int level = buf.getShort(buf.position() + KOCH_LEVEL) & 0xFFFF;
+        buf.position(buf.position() + SETTINGS); // time, seed and settings
+        int path = buf.getShort() & 0xFFFF;
+        buf.position(buf.position() + path); // name of the file
+        playedMillis += buf.getLong();
+        int length = buf.getInt();
+        int wrong = buf.getInt();
+        characters += length;
+        mistakes += wrong;
+        sessions++;
+        if (level > 0) {
+            // the check of a Koch session may have added a character
+            kochLevel = Math.max(kochLevel, Koch.passed(length, wrong) ? level + 1 : level);
+        }
+        for (int n = buf.getShort() & 0xFFFF; n > 0; n--) {
+            chars.computeIfAbsent(buf.getChar(), (Character c) -> new long[2])[0] += buf.getInt();
+        }
+        for (int n = buf.getShort() & 0xFFFF; n > 0; n--) {
+            char right = buf.getChar();
+            buf.getChar(); // what was written instead
+            chars.computeIfAbsent(right, (Character c) -> new long[2])[1] += buf.getInt();
+        }
+    }
+
+    /**
+     * @return MAGIC and VERSION which start the log
+     */
+    private static ByteBuffer logHeader() {
+        return ByteBuffer.allocate(LOG_HEADER).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    /**
+     * @return true if the log was written by this version
+     */
+    private boolean hasLogHeader() throws IOException {
+        try (InputStream in = Files.newInputStream(log.toPath())) {
+            return ByteBuffer.wrap(in.readNBytes(LOG_HEADER)).equals(logHeader());
+        }
+    }
+
+    /**
+     * Reads totals saved with the log
+     *
+     * @return true if the index was loaded
+     */
+    private boolean loadIndex() {
+        if (!index.isFile()) {
+            return false;
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(index.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != INDEX_VERSION) {
+                return false;
+            }
+            covered = buf.getLong();
+            sessions = buf.getLong();
+            characters = buf.getLong();
+            mistakes = buf.getLong();
+            playedMillis = buf.getLong();
+            kochLevel = buf.getInt();
+            for (int n = buf.getInt(); n > 0; n--) {
+                chars.put(buf.getChar(), new long[]{buf.getLong(), buf.getLong()});
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, "Cannot read index " + index, ex);
+            chars.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the index by a new one, the old one stays if writing fails
+     */
+    private void saveIndex() {
+        ByteBuffer buf;
+        synchronized (this) {
+            buf = ByteBuffer.allocate(56 + chars.size() * 18).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(INDEX_VERSION).putLong(covered);
+            buf.putLong(sessions).putLong(characters).putLong(mistakes).putLong(playedMillis);
+            buf.putInt(kochLevel);
+            buf.putInt(chars.size());
+            chars.forEach((c, counts) -> buf.putChar(c).putLong(counts[0]).putLong(counts[1]));
+        }
+        buf.flip();
+        File tmp = new File(index.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, "Cannot save index " + index, ex);
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Logger.getLogger(ProgressStore.class.getName()).log(Level.WARNING, "Cannot save index " + index, ex);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package morse;
+
+import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Window with the result of a check. Mistakes and confusions are shown in
+ * tables which read the result directly, JTable paints only visible rows,
+ * so opening the report takes the same time for any number of mistakes.
+ *
+ * @author Matus Namesny
+ */
+class ReportDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates report window for the result
+     *
+     * @param owner = main window
+     * @param result = result of the check
+     */
+    ReportDialog(JFrame owner, Checker.Result result) {
+        super(owner, "Check", false);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JLabel summary = new JLabel(String.format("Mistakes: %d of %d characters (%.1f %% right)",
+                result.getMistakes().size(), result.getLength(), 100 * result.getAccuracy()));
+        summary.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        JTable mistakes = new JTable(new MistakeModel(result.getMistakes()));
+        mistakes.setAutoCreateRowSorter(true);
+        JTable confusions = new JTable(new ConfusionModel(result));
+        confusions.setAutoCreateRowSorter(true);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Mistakes", new JScrollPane(mistakes));
+        tabs.addTab("Confusions", new JScrollPane(confusions));
+
+        add(summary, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+        setSize(400, 400);
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Wrong character, correct character and index of each mistake
+     */
+    private static class MistakeModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String[] COLUMNS = {"Index", "Wrong", "Right"};
+
+        private final List<Checker.Mistake> mistakes;
+
+        MistakeModel(List<Checker.Mistake> mistakes) {
+            this.mistakes = mistakes;
+        }
+
+        @Override
+        public int getRowCount() {
+            return mistakes.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Integer.class : Character.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Checker.Mistake m = mistakes.get(row);
+            switch (column) {
+                case 0:
+                    return m.getIndex();
+                case 1:
+                    return m.getWrong();
+                default:
+                    return m.getRight();
+            }
+        }
+    }
+
+    /**
+     * Played character, what was written instead and how many times
+     */
+    private static class ConfusionModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String[] COLUMNS = {"Played", "Written", "Count"};
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        ConfusionModel(Checker.Result result) {
+            // at most one row for each pair of characters
+            result.getConfusions().forEach((right, wrongs) -> wrongs.forEach((wrong, count) -> {
+                rows.add(new Object[]{right, wrong, count});
+            }));
+            rows.sort((a, b) -> (Integer) b[2] - (Integer) a[2]);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 2 ? Integer.class : Character.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package morse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Session is one practice session. It reads characters from Source, plays
+ * them in morse code and records played characters in a Transcript for
+ * later check. The transcript can also be saved to a file.
+ * The session does not depend on Swing, GraphicInterface is just one of its
+ * clients.
+ *
+ * Usage: set source, sound, speed and optionally duration and transcript
+ * file, add listeners and call start().
+ *
+ * @author Matus Namesny
+ */
+public class Session {
+
+    /**
+     * Default number of characters read ahead of playing
+     */
+    public static final int DEFAULT_LOOKAHEAD = 256;
+
+    private final Codebook codebook;
+    private final WaveformCache cache;
+    private final List<SessionListener> listeners;
+
+    private Source source;
+    private Sound sound;
+    private int speed;
+    private long duration;
+    private int bufferMillis;
+    private File transcriptFile;
+    private int lookahead;
+    private ThreadFactory threads;
+
+    private Output output;
+    private Prefetcher prefetcher;
+    private Transcript transcript;
+    private TranscriptWriter writer;
+    private volatile long startTime; // moved forward by pauses
+    private long endTime;
+    private long pauseTime; // 0 unless paused
+    private AudioEngine ownEngine;
+    private long seed;
+    private volatile boolean playing;
+
+    /**
+     * @param codebook = translation of characters to morse code
+     * @param cache = cache of rendered characters, can be shared by sessions
+     */
+    public Session(Codebook codebook, WaveformCache cache) {
+        this.codebook = codebook;
+        this.cache = cache;
+        listeners = new CopyOnWriteArrayList<>();
+        speed = 20;
+        bufferMillis = AudioEngine.DEFAULT_BUFFER_MILLIS;
+        lookahead = DEFAULT_LOOKAHEAD;
+        threads = (Runnable r) -> {
+            Thread t = new Thread(r, "morse-prefetch");
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Starts playing on the sound card on a new audio thread
+     *
+     * @throws IllegalStateException if the session is playing or source or
+     * sound are not set
+     */
+    public void start() {
+        AudioEngine engine = new AudioEngine(sound, bufferMillis);
+        synchronized (this) {
+            try {
+                start(engine);
+            } catch (RuntimeException | Error ex) {
+                engine.close();
+                throw ex;
+            }
+            ownEngine = engine; // closed when the session finishes
+        }
+    }
+
+    /**
+     * Starts playing into the given output
+     *
+     * @param output = where the session is played
+     * @throws IllegalStateException if the session is playing or source or
+     * sound are not set
+     */
+    public synchronized void start(Output output) {
+        if (playing) {
+            throw new IllegalStateException("Session is already playing");
+        }
+        if (source == null || sound == null) {
+            throw new IllegalStateException("Source and sound have to be set");
+        }
+        transcript = new Transcript();
+        writer = transcriptFile == null ? null : new TranscriptWriter(transcript, transcriptFile);
+        startTime = System.nanoTime();
+        pauseTime = 0;
+        ownEngine = null;
+        seed = source.getSeed();
+        playing = true;
+        this.output = output;
+        output.setJitter(JitterMeter.getDefault().get(speed));
+        Metrics.getDefault().started(this);
+        prefetcher = null;
+        try {
+            // generated characters are read on the audio thread, they never wait
+            prefetcher = new Prefetcher(source, codebook, source.isGenerated() ? 0 : lookahead);
+            prefetcher.start(threads);
+            output.start(new Beat(this, prefetcher, source.isGenerated()));
+        } catch (RuntimeException | Error ex) {
+            // the audio thread never ran, so finished() will not be called
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            playing = false;
+            Metrics.getDefault().finished(this);
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops playing, listeners are notified when the audio thread ends
+     */
+    public synchronized void stop() {
+        if (output != null) {
+            output.stop();
+        }
+    }
+
+    /**
+     * Pauses playing, the time of the pause does not count into duration
+     *
+     * @throws UnsupportedOperationException if the output cannot pause
+     */
+    public synchronized void pause() {
+        if (playing && pauseTime == 0) {
+            output.pause();
+            pauseTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Resumes paused playing
+     */
+    public synchronized void resume() {
+        if (pauseTime != 0) {
+            startTime += System.nanoTime() - pauseTime;
+            pauseTime = 0;
+            output.resume();
+        }
+    }
+
+    /**
+     * @return true while the session is paused
+     */
+    public synchronized boolean isPaused() {
+        return pauseTime != 0;
+    }
+
+    /**
+     * Called by Beat for every played character
+     */
+    void played(int codePoint) {
+        transcript.appendCodePoint(codePoint);
+        Metrics.getDefault().played();
+        for (SessionListener listener : listeners) {
+            listener.played(codePoint);
+        }
+    }
+
+    /**
+     * Called when the audio thread ends
+     */
+    void finished() {
+        synchronized (this) {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            playing = false;
+            endTime = pauseTime != 0 ? pauseTime : System.nanoTime();
+            pauseTime = 0;
+            if (ownEngine != null) {
+                ownEngine.close();
+                ownEngine = null;
+            }
+            try {
+                source.close(); // the file or corpus is not needed any more
+            } catch (IOException ex) {
+                Logger.getLogger(Session.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+        Metrics.getDefault().finished(this);
+        for (SessionListener listener : listeners) {
+            listener.finished();
+        }
+    }
+
+    /**
+     * @return true if the duration of the session has passed
+     */
+    boolean isTimeUp() {
+        return duration > 0 && System.nanoTime() - startTime >= duration * 1000000;
+    }
+
+    /**
+     * @param listener the listener to add
+     */
+    public void addListener(SessionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(SessionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return true while the session is playing
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @return number of audio buffer underruns in the last run
+     */
+    public long getUnderruns() {
+        return output == null ? 0 : output.getUnderruns();
+    }
+
+    /**
+     * @return number of characters read ahead and waiting to be played
+     */
+    public int getQueueDepth() {
+        Prefetcher p = prefetcher;
+        return p == null ? 0 : p.getDepth();
+    }
+
+    /**
+     * @return the codebook
+     */
+    public Codebook getCodebook() {
+        return codebook;
+    }
+
+    /**
+     * @return the cache
+     */
+    public WaveformCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the source
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @param source the source to set
+     */
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the sound
+     */
+    public Sound getSound() {
+        return sound;
+    }
+
+    /**
+     * @param sound the sound to set
+     */
+    public void setSound(Sound sound) {
+        this.sound = sound;
+    }
+
+    /**
+     * @return the speed in words per minute
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed the speed in words per minute to set
+     */
+    public void setSpeed(int speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return the duration in milliseconds, 0 if unlimited
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @param duration the duration in milliseconds to set, 0 for unlimited
+     */
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @return the bufferMillis
+     */
+    public int getBufferMillis() {
+        return bufferMillis;
+    }
+
+    /**
+     * @param bufferMillis the size of audio buffer in milliseconds to set
+     */
+    public void setBufferMillis(int bufferMillis) {
+        this.bufferMillis = bufferMillis;
+    }
+
+    /**
+     * @return characters played in the last run, null before start
+     */
+    public Transcript getTranscript() {
+        return transcript;
+    }
+
+    /**
+     * @return how long the last run played in milliseconds, so far if it is
+     * still playing
+     */
+    public synchronized long getPlayedMillis() {
+        return ((playing ? System.nanoTime() : endTime) - startTime) / 1000000;
+    }
+
+    /**
+     * @return seed of the source in the last run, a source created with the
+     * same settings and seed plays the same characters
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the transcriptFile
+     */
+    public File getTranscriptFile() {
+        return transcriptFile;
+    }
+
+    /**
+     * @param transcriptFile file where played characters are saved, null
+     * if they are kept only in memory
+     */
+    public void setTranscriptFile(File transcriptFile) {
+        this.transcriptFile = transcriptFile;
+    }
+
+    /**
+     * @return the lookahead
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    /**
+     * @param lookahead number of characters read ahead of playing to set,
+     * characters of a generated source are not read ahead
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * @param threads factory of the thread which reads the source to set
+     */
+    public void setThreadFactory(ThreadFactory threads) {
+        this.threads = threads;
+    }
+}
@@ -0,0 +1,24 @@
+package morse;
+
+/**
+ * Receives events of a Session. Methods are called from the audio thread,
+ * GUI clients have to pass the events to the event dispatch thread.
+ *
+ * @author Matus Namesny
+ */
+public interface SessionListener {
+
+    /**
+     * Character was sent to the audio output
+     *
+     * @param codePoint = played character, space for a gap between groups
+     */
+    default void played(int codePoint) {
+    }
+
+    /**
+     * Session stopped, either everything was played or stop() was called
+     */
+    default void finished() {
+    }
+}
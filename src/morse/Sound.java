@@ -1,83 +1,86 @@
-
 package morse;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
 
 /**
- * Tone settings
+ * Tone settings: sample rate and pitch of the tone. Samples are 16 bit
+ * signed little endian mono, the format of a WAV file and of any sound card.
  * @author Matus Namesny
  */
 public class Sound {
 
-    private Clip clip;
-
     /**
-     * Tone settings are stored in Clip class
-     * @param intSR = sample rate
-     * @param intFPW = frames per wavelength
+     * Pitch used when none is chosen, in Hz
      */
-    public Sound(int intSR, int intFPW) {
-        try {
-            clip = AudioSystem.getClip();
-
-            float sampleRate = intSR;
+    public static final double DEFAULT_FREQUENCY = 600;
 
-            int wavelengths = 20; 
-            byte[] buf = new byte[2 * intFPW * wavelengths];
-            
-            AudioFormat af = new AudioFormat( // AudioFormat is needed to create AudioInputStream
-                    sampleRate, 
-                    8, // sample size in bits
-                    2, // number of channels
-                    true, // signed
-                    false // big endian
-            );
+    private static final int MAX_SAMPLE = 32767;
 
-            // Buffer array for ByteArrayInputStream
-            for (int i = 0; i < intFPW * wavelengths; i++) {
-                double angle = ((i * 2) / ((float) intFPW)) * (Math.PI);
-                buf[i * 2] = getByteValue(angle);
-                buf[(i * 2) + 1] = buf[i * 2];
-            }
-            byte[] b = buf;
-            
-            AudioInputStream ais = new AudioInputStream(
-                    new ByteArrayInputStream(b),
-                    af, // AudioFormat
-                    buf.length / 2); // length of AudioInputStream
+    private final int sampleRate;
+    private final double frequency;
+    private final AudioFormat format;
 
-            clip.open(ais); // Clip can be used by other methods
-
-        } catch (LineUnavailableException | IOException ex) {
-            Logger.getLogger(GraphicInterface.class.getName()).log(Level.SEVERE, null, ex);
-        }
+    /**
+     * Tone settings are stored as sample rate, pitch of the tone and format
+     * of the rendered samples
+     * @param sampleRate = frames per second, e.g. 8000, 44100 or 48000
+     * @param frequency = pitch in Hz
+     * @throws IllegalArgumentException if the pitch cannot be played at the
+     * sample rate
+     */
+    public Sound(int sampleRate, double frequency) {
+        new Oscillator(frequency, sampleRate); // checks the pitch
+        this.sampleRate = sampleRate;
+        this.frequency = frequency;
+
+        format = new AudioFormat( // AudioFormat is needed to open SourceDataLine
+                sampleRate, 
+                16, // sample size in bits
+                1, // number of channels
+                true, // signed
+                false // big endian
+        );
+    }
 
+    /**
+     * @return new oscillator of the tone, it is not thread safe, so every
+     * rendering thread needs its own
+     */
+    public Oscillator oscillator() {
+        return new Oscillator(frequency, sampleRate);
     }
 
-    // returns byte value at a point on sinus wave
-    private byte getByteValue(double angle) {
-        int maxVol = 127;
-        return (new Integer(
-                (int) Math.round(
-                        Math.sin(angle) * maxVol))).
-                byteValue();
+    /**
+     * Writes one frame into a buffer
+     * @param buf = buffer in the format of this Sound
+     * @param offset = offset of the frame in bytes
+     * @param value = sample between -1 and 1
+     */
+    public void write(byte[] buf, int offset, double value) {
+        int v = (int) Math.round(value * MAX_SAMPLE);
+        buf[offset] = (byte) v;
+        buf[offset + 1] = (byte) (v >> 8);
     }
 
     /**
-     * @return the clip
+     * @return pitch of the tone in Hz
      */
-    public Clip getClip() {
-        return clip;
+    public double getFrequency() {
+        return frequency;
     }
 
+    /**
+     * @return the sampleRate
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
 
+    /**
+     * @return the format
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
 
 }
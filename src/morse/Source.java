@@ -1,128 +1,431 @@
 package morse;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The Source class is the source of characters to be played in morse code. 
- * The characters are either generated or read from a file. The class extends InputStream.
+ * The characters are either generated, read from a file or read as random
+ * excerpts from a Corpus. The class extends Reader.
  * New characters are returned by read method
  *
+ * A file is read through a fixed size buffer and decoded in chunks, so files
+ * of any size are streamed in constant memory. Characters without morse code
+ * are skipped, letters are upper-cased and every run of white space,
+ * including line breaks, is played as one space. The same applies to
+ * excerpts from a Corpus, which are separated by a space.
+ *
+ * Generated characters and the choice of excerpts come from a seeded
+ * SplittableRandom owned by the source, so the same seed plays the same
+ * characters again and sources on different threads share no state.
+ *
  * @author Matus Namesny
  */
-public class Source extends InputStream {
+public class Source extends Reader {
+
+    /**
+     * Size of the file buffer in bytes
+     */
+    public static final int CHUNK = 64 * 1024;
+
+    /**
+     * Number of excerpts in a row without a character with morse code,
+     * after which a corpus is taken as ended
+     */
+    public static final int MAX_EMPTY_EXCERPTS = 1000;
+
+    /**
+     * Class of generated letters, see getClasses()
+     */
+    public static final int LETTERS = 1;
+
+    /**
+     * Class of generated numbers
+     */
+    public static final int NUMBERS = 2;
+
+    /**
+     * Class of generated special characters
+     */
+    public static final int SPECIAL = 4;
 
-    private File sourceFile = null;
-    private FileReader fr;
-    private Character[] alphaArr;
-    private Random random;
+    private int[] alphabet;
+    private int classes; // bits of letters, numbers and special characters
+    private Koch koch;
+    private int level; // Koch level when the source was created
+    private SplittableRandom random; // one per source, never shared
+    private long seed;
     private final Boolean gener;
 
+    private File file;
+    private FileChannel channel;
+    private CharsetDecoder decoder;
+    private ByteBuffer bytes;
+    private CharBuffer chars;
+    private Codebook codebook;
+    private boolean eof; // all bytes were read from the file
+    private boolean finished; // all bytes were decoded
+    private boolean space; // last returned character was a space
+
+    private Corpus corpus;
+    private int sentences; // length of an excerpt
+    private long pos; // position in the corpus
+    private long end; // end of current excerpt
+    private int empty; // excerpts since the last returned character
+    private boolean closed;
+
+    /**
+     * New characters will be read from a UTF-8 file instead of being generated
+     *
+     * @param file - the source file from which the new characters will be read
+     * @throws IOException
+     */
+    public Source(File file) throws IOException {
+        this(file, StandardCharsets.UTF_8, Codebook.getDefault());
+    }
+
     /**
      * New characters will be read from a file instead of being generated
      *
      * @param file - the source file from which the new characters will be read
-     * @throws FileNotFoundException
+     * @param charset - encoding of the file
+     * @param codebook - characters which are not in codebook are skipped
+     * @throws IOException
      */
-    public Source(File file) throws FileNotFoundException {
+    public Source(File file, Charset charset, Codebook codebook) throws IOException {
         gener = false;
-        sourceFile = file;
-        fr = new FileReader(sourceFile);
+        this.file = file;
+        this.codebook = codebook;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocateDirect(CHUNK);
+        chars = CharBuffer.allocate(CHUNK);
+        chars.flip(); // empty
+        space = true; // leading white space is skipped
+    }
+
+    /**
+     * New characters will be read from random excerpts of a corpus, each
+     * excerpt is a few whole sentences. The corpus can be shared by many
+     * sources, each holds it until it is closed.
+     *
+     * @param corpus - text from which excerpts are taken
+     * @param sentences - number of sentences in one excerpt
+     * @param codebook - characters which are not in codebook are skipped
+     */
+    public Source(Corpus corpus, int sentences, Codebook codebook) {
+        this(corpus, sentences, codebook, ThreadLocalRandom.current().nextLong());
     }
 
     /**
-     * New characters will be randomly generated
+     * New characters will be read from random excerpts of a corpus, the same
+     * seed chooses the same excerpts
+     *
+     * @param corpus - text from which excerpts are taken
+     * @param sentences - number of sentences in one excerpt
+     * @param codebook - characters which are not in codebook are skipped
+     * @param seed - seed of the choice of excerpts, see getSeed()
+     */
+    public Source(Corpus corpus, int sentences, Codebook codebook, long seed) {
+        gener = false;
+        this.corpus = corpus;
+        this.sentences = sentences;
+        this.codebook = codebook;
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        space = true;
+        corpus.retain();
+    }
+
+    /**
+     * New characters will be randomly generated with a new random seed
      *
      * @param chars - each cell of array of booleans represents character class
      */
     public Source(Boolean[] chars) {
-        gener = true;
-        random = new Random();
-        List<Character> alphaList = new ArrayList<>();
+        this(chars, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * New characters will be randomly generated, the same seed generates the
+     * same characters
+     *
+     * @param chars - each cell of array of booleans represents character class
+     * @param seed - seed of the generator, see getSeed()
+     */
+    public Source(Boolean[] chars, long seed) {
+        StringBuilder alphabet = new StringBuilder();
         if (chars[0]) {
-            alphaList.add('A');
-            alphaList.add('B');
-            alphaList.add('C');
-            alphaList.add('D');
-            alphaList.add('E');
-            alphaList.add('F');
-            alphaList.add('G');
-            alphaList.add('H');
-            alphaList.add('I');
-            alphaList.add('J');
-            alphaList.add('K');
-            alphaList.add('L');
-            alphaList.add('M');
-            alphaList.add('N');
-            alphaList.add('O');
-            alphaList.add('P');
-            alphaList.add('Q');
-            alphaList.add('R');
-            alphaList.add('S');
-            alphaList.add('T');
-            alphaList.add('U');
-            alphaList.add('V');
-            alphaList.add('W');
-            alphaList.add('X');
-            alphaList.add('Y');
-            alphaList.add('Z');
+            alphabet.append("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+            classes |= LETTERS;
         }
         if (chars[1]) {
-            alphaList.add('0');
-            alphaList.add('1');
-            alphaList.add('2');
-            alphaList.add('3');
-            alphaList.add('4');
-            alphaList.add('5');
-            alphaList.add('6');
-            alphaList.add('7');
-            alphaList.add('8');
-            alphaList.add('9');
+            alphabet.append("0123456789");
+            classes |= NUMBERS;
         }
         if (chars[2]) {
-            alphaList.add('/');
-            alphaList.add('?');
-            alphaList.add('=');
+            alphabet.append("/?=");
+            classes |= SPECIAL;
+        }
+        gener = true;
+        this.alphabet = alphabet.codePoints().toArray();
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * New characters will be generated by the Koch method with a new random
+     * seed
+     *
+     * @param koch - characters being learnt and their weights
+     */
+    public Source(Koch koch) {
+        this(koch, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * New characters will be generated by the Koch method, with weights
+     * which change as the user learns
+     *
+     * @param koch - characters being learnt and their weights
+     * @param seed - seed of the generator, see getSeed()
+     */
+    public Source(Koch koch, long seed) {
+        gener = true;
+        this.koch = koch;
+        level = koch.getLevel();
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+    }
+
+    private Source(int[] alphabet, int classes, long seed) {
+        gener = true;
+        this.alphabet = alphabet;
+        this.classes = classes;
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Creates an independent source of generated characters, its seed is
+     * drawn from this source, so one seed reproduces a whole family of
+     * sources. Each source is used by one thread, none of them is shared.
+     *
+     * @return new source with the same characters
+     * @throws IllegalStateException if characters are not generated
+     */
+    public Source split() {
+        if (!gener) {
+            throw new IllegalStateException("Only generated sources can be split");
         }
+        return koch != null ? new Source(koch, random.nextLong()) : new Source(alphabet, classes, random.nextLong());
+    }
 
-        alphaArr = new Character[alphaList.size()];
-        alphaArr = alphaList.toArray(alphaArr);
+    /**
+     * @return seed of generated characters or of the choice of excerpts
+     */
+    public long getSeed() {
+        return seed;
+    }
 
+    /**
+     * @return generated classes of characters, any of LETTERS, NUMBERS and
+     * SPECIAL, 0 for Koch or a file
+     */
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return Koch level when the source was created, 0 if characters are
+     * not generated by the Koch method
+     */
+    public int getKochLevel() {
+        return level;
+    }
+
+    /**
+     * @return number of sentences in one excerpt, 0 unless characters are
+     * read from a corpus
+     */
+    public int getSentences() {
+        return corpus != null ? sentences : 0;
+    }
+
+    /**
+     * @return file of the characters or of the corpus, null if characters
+     * are generated
+     */
+    public File getFile() {
+        return corpus != null ? corpus.getFile() : file;
+    }
+
+    /**
+     * @return true if characters are generated, false if they are read from a file
+     */
+    public boolean isGenerated() {
+        return gener;
     }
 
     /**
      * Either reads new character from a given file or generates one
      *
-     * @return new character
+     * @return new character, -1 at the end of file or after
+     * MAX_EMPTY_EXCERPTS excerpts without a character with morse code
      * @throws IOException
      */
     @Override
     public int read() throws IOException {
         if (gener) { //new character is generated
-            int x = random.nextInt(alphaArr.length);
-            return alphaArr[x];
+            return koch != null ? koch.draw(random) : alphabet[random.nextInt(alphabet.length)];
         } else {
 
-            int x = fr.read();
+            int x;
+            while ((x = nextChar()) != -1) {
 
-            // skips characters which don't have morse code equivalent
-            while (!Character.isLetterOrDigit(x) && x != '?' && x != '=' && x != '/' && x != ' ' && x != -1 && x != 10) {
-                x = fr.read();
+                if (Character.isWhitespace(x)) { // line breaks are spaces too
+                    if (!space) {
+                        space = true;
+                        return ' ';
+                    }
+                    continue;
+                }
+
+                // skips characters which don't have morse code equivalent
+                x = Character.toUpperCase(x);
+                if (codebook.contains(x)) {
+                    space = false;
+                    empty = 0;
+                    return x;
+                }
             }
+            return -1; // end of file
+
+        }
+
+    }
+
+    /**
+     * @return next character of the file or corpus before filtering, -1 at
+     * the end of file or of a corpus with nothing to play
+     */
+    private int nextChar() throws IOException {
+        if (corpus != null) {
+            return nextCorpusChar();
+        }
+        return chars.hasRemaining() || fill() ? chars.get() : -1;
+    }
 
-            if ((x == 10) || (x == -1)) { // end of file
+    /**
+     * Decodes next UTF-8 character of the current excerpt, moves to a random
+     * excerpt at its end
+     *
+     * @return next character, space between excerpts, -1 after too many
+     * excerpts without a character to play
+     */
+    private int nextCorpusChar() {
+        if (pos >= end) {
+            if (empty == MAX_EMPTY_EXCERPTS) {
                 return -1;
-            } else {
-                return Character.toUpperCase(x);
             }
+            empty++;
+            int i = random.nextInt(corpus.getCount());
+            pos = corpus.start(i);
+            end = corpus.end(i, sentences);
+            return ' ';
+        }
+        int b = corpus.get(pos++) & 0xFF;
+        if (b < 0x80) {
+            return b;
+        }
+        int n = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : 0; // continuation bytes
+        if (n == 0) {
+            return 0xFFFD; // broken sequence, skipped by the filter
+        }
+        int c = b & (0x3F >> n);
+        for (int k = 0; k < n; k++) {
+            if (pos >= end || (corpus.get(pos) & 0xC0) != 0x80) {
+                return 0xFFFD;
+            }
+            c = (c << 6) | (corpus.get(pos++) & 0x3F);
+        }
+        return c;
+    }
+
+    /**
+     * Reads characters into an array
+     *
+     * @param cbuf = destination buffer
+     * @param off = offset at which to start storing characters
+     * @param len = maximum number of characters to read
+     * @return number of characters read, -1 at the end of file
+     * @throws IOException
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int x = read();
+            if (x == -1) {
+                return n == 0 ? -1 : n;
+            }
+            cbuf[off + n++] = (char) x;
+        }
+        return n;
+    }
 
+    /**
+     * Decodes next chunk of the file
+     *
+     * @return false at the end of file
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !finished) {
+            if (!eof && bytes.hasRemaining() && channel.read(bytes) < 0) {
+                eof = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, eof);
+            bytes.compact();
+            if (eof && result.isUnderflow() && decoder.flush(chars).isUnderflow()) {
+                finished = true;
+            }
         }
+        chars.flip();
+        return chars.hasRemaining();
+    }
 
+    /**
+     * Closes the file or releases the corpus
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            channel.close();
+        }
+        if (corpus != null) {
+            corpus.release();
+        }
     }
 }
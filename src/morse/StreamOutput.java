@@ -0,0 +1,189 @@
+package morse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * StreamOutput plays a session into an OutputStream in real time, either as
+ * WAV audio or as server-sent events with played characters and their times.
+ * The stream runs at most LEAD_MILLIS ahead of real time, so the client
+ * buffers little and stop() takes effect quickly.
+ *
+ * @author Matus Namesny
+ */
+public class StreamOutput implements Output, SessionListener, Runnable {
+
+    /**
+     * How far the stream may run ahead of real time in milliseconds
+     */
+    public static final int LEAD_MILLIS = 250;
+
+    private final OutputStream out;
+    private final Sound sound;
+    private final boolean audio;
+    private final ThreadFactory threads;
+
+    private AudioEngine.Feed feed;
+    private volatile JitterMeter.Histogram jitter; // set by the session, read by the streaming thread
+    private Thread thread;
+    private long frames; // frames sent so far
+
+    private volatile boolean running;
+    private volatile long underruns;
+
+    /**
+     * @param out = stream of the client
+     * @param sound = tone settings of the session
+     * @param audio = true for WAV audio, false for events
+     * @param threads = factory of the thread which plays the session
+     */
+    public StreamOutput(OutputStream out, Sound sound, boolean audio, ThreadFactory threads) {
+        this.out = out;
+        this.sound = sound;
+        this.audio = audio;
+        this.threads = threads;
+    }
+
+    @Override
+    public void start(AudioEngine.Feed feed) {
+        this.feed = feed;
+        running = true;
+        thread = threads.newThread(this);
+        thread.start();
+    }
+
+    @Override
+    public void setJitter(JitterMeter.Histogram jitter) {
+        this.jitter = jitter;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Sends characters and sleeps so the stream keeps pace with real time
+     */
+    @Override
+    public void run() {
+        int frameSize = sound.getFormat().getFrameSize();
+        long start = System.nanoTime();
+        try {
+            if (audio) {
+                writeWavHeader();
+            }
+            while (running) {
+                byte[] pcm = feed.next();
+                if (pcm == null) {
+                    break;
+                }
+                if (audio) {
+                    out.write(pcm); // signed 16 bit little endian, as in WAV
+                }
+                out.flush();
+                frames += pcm.length / frameSize;
+
+                long due = start + frames * 1000000000L / sound.getSampleRate();
+                long wait = due - TimeUnit.MILLISECONDS.toNanos(LEAD_MILLIS) - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                    JitterMeter.Histogram h = jitter;
+                    if (h != null) {
+                        // how late the next character leaves after sleep
+                        h.record(System.nanoTime() - (due - TimeUnit.MILLISECONDS.toNanos(LEAD_MILLIS)));
+                    }
+                } else if (System.nanoTime() > due) {
+                    // the client has already played everything we have sent
+                    underruns++;
+                }
+            }
+        } catch (IOException ex) {
+            // client closed the connection
+            Logger.getLogger(StreamOutput.class.getName()).log(Level.FINE, null, ex);
+        } catch (InterruptedException ex) {
+            // stopped
+        } finally {
+            running = false;
+            try {
+                out.close();
+            } catch (IOException ex) {
+                Logger.getLogger(StreamOutput.class.getName()).log(Level.FINE, null, ex);
+            }
+            feed.done();
+        }
+    }
+
+    /**
+     * Sends event with played character and its time in milliseconds from
+     * the start of the session
+     *
+     * @param codePoint = played character
+     */
+    @Override
+    public void played(int codePoint) {
+        if (audio) {
+            return;
+        }
+        long millis = frames * 1000 / sound.getSampleRate();
+        String c = codePoint == ' ' ? "space" : new String(Character.toChars(codePoint));
+        try {
+            out.write(("data: " + c + " " + millis + "\n\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            stop();
+        }
+    }
+
+    // header of WAV stream with unknown length
+    private void writeWavHeader() throws IOException {
+        AudioFormat format = sound.getFormat();
+        int channels = format.getChannels();
+        int bits = format.getSampleSizeInBits();
+        int rate = sound.getSampleRate();
+        byte[] h = new byte[44];
+        put(h, 0, "RIFF");
+        putInt(h, 4, 0xFFFFFFFF); // unknown length
+        put(h, 8, "WAVE");
+        put(h, 12, "fmt ");
+        putInt(h, 16, 16);
+        putShort(h, 20, 1); // PCM
+        putShort(h, 22, channels);
+        putInt(h, 24, rate);
+        putInt(h, 28, rate * format.getFrameSize());
+        putShort(h, 32, format.getFrameSize());
+        putShort(h, 34, bits);
+        put(h, 36, "data");
+        putInt(h, 40, 0xFFFFFFFF);
+        out.write(h);
+    }
+
+    private static void put(byte[] b, int off, String s) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) s.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >> 8);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        putShort(b, off, v);
+        putShort(b, off + 2, v >> 16);
+    }
+
+    @Override
+    public long getUnderruns() {
+        return underruns;
+    }
+}
@@ -0,0 +1,60 @@
+package morse;
+
+import java.util.Arrays;
+
+/**
+ * Transcript keeps played characters in memory for check. Characters are
+ * appended by the audio thread and can be read from any thread.
+ *
+ * @author Matus Namesny
+ */
+public class Transcript implements CharSequence {
+
+    private char[] chars;
+    private int length;
+
+    /**
+     * Creates empty transcript
+     */
+    public Transcript() {
+        chars = new char[256];
+    }
+
+    /**
+     * Appends played character
+     *
+     * @param codePoint = played character
+     */
+    public synchronized void appendCodePoint(int codePoint) {
+        if (length + 2 > chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        length += Character.toChars(codePoint, chars, length);
+    }
+
+    @Override
+    public synchronized int length() {
+        return length;
+    }
+
+    @Override
+    public synchronized char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return chars[index];
+    }
+
+    @Override
+    public synchronized String subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,92 @@
+package morse;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves a Transcript into a UTF-8 file. Characters are written in batches
+ * on a background thread, so the audio thread never touches the disk.
+ *
+ * @author Matus Namesny
+ */
+class TranscriptWriter implements Runnable {
+
+    /**
+     * Interval between writes in milliseconds
+     */
+    public static final long FLUSH_MILLIS = 1000;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+        Thread t = new Thread(r, "morse-transcript");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Transcript transcript;
+    private final File file;
+    private final ScheduledFuture<?> task;
+
+    private Writer fw;
+    private int written; // number of characters already in the file
+
+    /**
+     * Starts writing transcript to a file
+     *
+     * @param transcript = played characters
+     * @param file = file to write, it is overwritten
+     */
+    public TranscriptWriter(Transcript transcript, File file) {
+        this.transcript = transcript;
+        this.file = file;
+        task = FLUSHER.scheduleWithFixedDelay(this, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes characters appended since the last write
+     */
+    @Override
+    public void run() {
+        try {
+            if (fw == null) {
+                fw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            }
+            int length = transcript.length();
+            if (length > written) {
+                fw.append(transcript.subSequence(written, length));
+                fw.flush();
+                written = length;
+            }
+        } catch (IOException ex) {
+            task.cancel(false);
+            Logger.getLogger(TranscriptWriter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Writes the rest of the transcript and closes the file in background
+     */
+    public void close() {
+        task.cancel(false);
+        FLUSHER.execute(() -> {
+            run();
+            try {
+                if (fw != null) {
+                    fw.close();
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(TranscriptWriter.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        });
+    }
+}
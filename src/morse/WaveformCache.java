@@ -0,0 +1,194 @@
+package morse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WaveformCache keeps fully rendered PCM of characters, so playing a
+ * character is just a copy of a ready buffer. Waveforms are rendered lazily
+ * on first use and the least recently used ones are dropped when the cache
+ * grows over its size limit.
+ *
+ * Waveforms are keyed by the code of the character, so characters sharing a
+ * code (e.g. Latin and Cyrillic A) share one waveform.
+ *
+ * Every element has raised cosine rise and fall, which removes the clicks
+ * of a tone switched on and off in the middle of a period.
+ *
+ * @author Matus Namesny
+ */
+public class WaveformCache {
+
+    /**
+     * Default limit of the cache in bytes
+     */
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Rise and fall time of an element in milliseconds
+     */
+    public static final double RISE_MILLIS = 5;
+
+    private final long maxBytes;
+    private long bytes;
+
+    private final Map<Key, byte[]> waveforms;
+    private final Key probe; // reused for lookups under the lock, never stored in the map
+
+    /**
+     * @param maxBytes = size limit of rendered waveforms in bytes
+     */
+    public WaveformCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        waveforms = new LinkedHashMap<>(64, 0.75f, true); // access order, eldest is least recently used
+        probe = new Key();
+    }
+
+    /**
+     * Returns rendered character, the returned array must not be modified.
+     * A missing waveform is rendered outside the lock, so other characters
+     * are served meanwhile. Threads missing the same character at once may
+     * each render it, the first one stored is returned to all of them.
+     *
+     * @param sound = tone settings
+     * @param wpm = speed in words per minute
+     * @param code = code of the character from Codebook
+     * @return PCM of the character followed by a gap between characters
+     */
+    public byte[] get(Sound sound, int wpm, long code) {
+        synchronized (this) {
+            byte[] pcm = waveforms.get(probe.set(code, wpm, sound));
+            if (pcm != null) {
+                return pcm;
+            }
+        }
+        byte[] rendered = render(sound, wpm, code);
+        synchronized (this) {
+            Key key = new Key().set(code, wpm, sound);
+            byte[] pcm = waveforms.putIfAbsent(key, rendered);
+            if (pcm != null) {
+                return pcm;
+            }
+            bytes += rendered.length;
+            evict();
+            return rendered;
+        }
+    }
+
+    /**
+     * Drops least recently used waveforms until the cache fits its limit
+     */
+    private void evict() {
+        Iterator<byte[]> it = waveforms.values().iterator();
+        while (bytes > maxBytes && waveforms.size() > 1) {
+            bytes -= it.next().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * @return size of rendered waveforms in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the maxBytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Length of one unit (dit) rounded to whole frames, so every element edge
+     * is on a sample boundary
+     *
+     * @param sampleRate = sample rate
+     * @param wpm = speed in words per minute
+     * @return number of frames in one unit
+     */
+    public static int framesPerUnit(int sampleRate, int wpm) {
+        return (int) Math.round(sampleRate * 1.2 / wpm);
+    }
+
+    /**
+     * Renders character, runs of units with key down become elements
+     *
+     * @param sound = tone settings
+     * @param wpm = speed in words per minute
+     * @param code = code of the character from Codebook
+     * @return PCM of the character
+     */
+    static byte[] render(Sound sound, int wpm, long code) {
+        int unit = framesPerUnit(sound.getSampleRate(), wpm);
+        int frameSize = sound.getFormat().getFrameSize();
+        int rise = Math.min((int) (sound.getSampleRate() * RISE_MILLIS / 1000), unit / 3);
+        int units = Codebook.units(code);
+
+        byte[] pcm = new byte[units * unit * frameSize]; // zeros are silence
+        Oscillator osc = sound.oscillator();
+        int u = 0;
+        while (u < units) {
+            if (!Codebook.isDown(code, u)) {
+                u++;
+                continue;
+            }
+            int start = u;
+            while (Codebook.isDown(code, u)) {
+                u++;
+            }
+            int pos = start * unit;
+            int length = (u - start) * unit;
+            osc.reset(); // every element starts at phase 0
+            for (int f = 0; f < length; f++) {
+                sound.write(pcm, (pos + f) * frameSize, osc.next() * envelope(f, length, rise));
+            }
+        }
+        return pcm;
+    }
+
+    // raised cosine rise at the start and fall at the end of an element
+    static double envelope(int frame, int length, int rise) {
+        if (frame < rise) {
+            return 0.5 * (1 - Math.cos(Math.PI * frame / rise));
+        } else if (frame >= length - rise) {
+            return 0.5 * (1 - Math.cos(Math.PI * (length - frame) / rise));
+        }
+        return 1;
+    }
+
+    /**
+     * Identifies rendered waveform
+     */
+    private static final class Key {
+
+        private long code;
+        private int wpm;
+        private long frequency; // bits of double frequency
+        private int sampleRate;
+
+        private Key set(long code, int wpm, Sound sound) {
+            this.code = code;
+            this.wpm = wpm;
+            this.frequency = Double.doubleToLongBits(sound.getFrequency());
+            this.sampleRate = sound.getSampleRate();
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return code == k.code && wpm == k.wpm && frequency == k.frequency && sampleRate == k.sampleRate;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((Long.hashCode(code) * 31 + wpm) * 31 + Long.hashCode(frequency)) * 31 + sampleRate;
+        }
+    }
+}
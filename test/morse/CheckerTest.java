@@ -0,0 +1,179 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Alignment of Checker against a plain full table of edit distance
+ *
+ * @author Matus Namesny
+ */
+public class CheckerTest {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Test
+    public void dropsAndAddsOneCharacter() {
+        List<Checker.Mistake> mistakes = Checker.check("PARIS PARIS", "PRIS PAARIS").getMistakes();
+        assertEquals(2, mistakes.size());
+        assertEquals(Checker.MISSING, mistakes.get(0).getWrong());
+        assertEquals('A', mistakes.get(0).getRight());
+        assertEquals(1, mistakes.get(0).getIndex());
+        assertEquals('A', mistakes.get(1).getWrong());
+        assertEquals(Checker.MISSING, mistakes.get(1).getRight());
+    }
+
+    @Test
+    public void extraCharactersInTheMiddle() {
+        for (int extra : new int[]{16, 17, 20, 50, 200}) {
+            String played = text(new Random(extra), 1000);
+            String user = played.substring(0, 500) + text(new Random(-extra), extra) + played.substring(500);
+            assertAligned(played, user);
+        }
+    }
+
+    @Test
+    public void longInsertion() {
+        String played = text(new Random(1), 2000);
+        assertAligned(played, played.substring(0, 1200) + junk(new Random(2), 50) + played.substring(1200));
+    }
+
+    @Test
+    public void chatterBeforeCopy() {
+        String played = text(new Random(3), 1000);
+        assertAligned(played, junk(new Random(4), 40) + played);
+    }
+
+    @Test
+    public void droppedCharacters() {
+        String played = text(new Random(5), 1000);
+        assertAligned(played, played.substring(0, 300) + played.substring(400));
+        assertAligned(played, played.substring(0, 600));
+    }
+
+    @Test
+    public void scatteredMistakes() {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            String played = text(random, 1500);
+            assertAligned(played, copy(random, played, 0.08));
+        }
+    }
+
+    @Test
+    public void lowLevelOfKoch() {
+        Random random = new Random(6);
+        StringBuilder played = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            played.append(i % 6 == 5 ? ' ' : random.nextBoolean() ? 'K' : 'M');
+        }
+        assertAligned(played.toString(), copy(random, played.toString(), 0.05));
+    }
+
+    @Test
+    public void longTranscript() {
+        Random random = new Random(8);
+        String played = text(random, 300000);
+        // edits far apart, '#' is never played, so each of them costs exactly 1
+        StringBuilder user = new StringBuilder(played.length());
+        int edits = 0;
+        int last = 0;
+        for (int i = 150; i < played.length() - 150; i += 150 + random.nextInt(150)) {
+            user.append(played, last, i);
+            switch (random.nextInt(3)) {
+                case 0:
+                    user.append('#').append(played.charAt(i));
+                    break;
+                case 1:
+                    user.append('#');
+                    break;
+                default:
+            }
+            last = i + 1;
+            edits++;
+        }
+        user.append(played, last, played.length());
+        int mistakes = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> Checker.check(played, user.toString()).getMistakes().size(),
+                "alignment is no longer close to linear");
+        assertEquals(edits, mistakes);
+    }
+
+    private static void assertAligned(String played, String user) {
+        assertEquals(distance(Checker.normalize(played), Checker.normalize(user)),
+                Checker.check(played, user).getMistakes().size());
+    }
+
+    /**
+     * Edit distance over the whole table
+     */
+    private static int distance(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                cur[j] = Math.min(Math.min(prev[j], cur[j - 1]) + 1,
+                        prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    /**
+     * Groups of 5 random characters separated by spaces
+     */
+    static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(i % 6 == 5 ? ' ' : ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Random characters without spaces
+     */
+    static String junk(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Copy with substituted, extra and dropped characters
+     */
+    static String copy(Random random, String played, double errorRate) {
+        StringBuilder sb = new StringBuilder(played.length());
+        for (int i = 0; i < played.length(); i++) {
+            char c = played.charAt(i);
+            if (random.nextDouble() >= errorRate) {
+                sb.append(c);
+            } else {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                        break;
+                    case 1:
+                        sb.append(c).append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                        break;
+                    default:
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Excerpts of a Corpus read by Source
+ *
+ * @author Matus Namesny
+ */
+public class CorpusTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void noSentences() throws IOException {
+        assertThrows(IOException.class, () -> Corpus.open(write("empty.txt", "")));
+        assertThrows(IOException.class, () -> Corpus.open(write("white.txt", " \n\t\r\n  ")));
+    }
+
+    @Test
+    public void nothingToPlay() throws IOException {
+        Corpus corpus = Corpus.open(write("cjk.txt", "漢字。\nかな。\n"));
+        try (Source source = new Source(corpus, 3, Codebook.getDefault(), 1)) {
+            assertEquals(-1, source.read());
+        }
+    }
+
+    @Test
+    public void excerpts() throws IOException {
+        Corpus corpus = Corpus.open(write("text.txt", "One two. Three!\nFour? Five\n"));
+        assertEquals(4, corpus.getCount());
+        try (Source source = new Source(corpus, 1, Codebook.getDefault(), 2)) {
+            for (int i = 0; i < 1000; i++) {
+                int x = source.read();
+                assertEquals(true, x == ' ' || Codebook.getDefault().contains(x), "character " + x);
+            }
+        }
+    }
+
+    @Test
+    public void releasedWithTheLastSource() throws IOException {
+        File file = write("shared.txt", "Shared text.\n");
+        Corpus corpus = Corpus.open(file);
+        Source a = new Source(corpus, 1, Codebook.getDefault());
+        Source b = new Source(corpus, 1, Codebook.getDefault());
+        a.close();
+        a.close(); // closed once
+        assertSame(corpus, Corpus.open(file));
+        b.close();
+        assertNotSame(corpus, Corpus.open(file));
+    }
+
+    private File write(String name, String text) throws IOException {
+        return Files.write(dir.resolve(name), text.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+}
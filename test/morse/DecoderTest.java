@@ -0,0 +1,103 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Decoder on audio rendered by WaveformCache
+ *
+ * @author Matus Namesny
+ */
+public class DecoderTest {
+
+    private static final int[] RATES = {8000, 44100, 48000};
+    private static final int[] SPEEDS = {5, 20, 60};
+
+    @Test
+    public void startsWithDash() {
+        for (String text : new String[]{"TEST", "TO BE OR NOT TO BE", "THE QUICK BROWN FOX", "MOM", "O SOS", "T E"}) {
+            for (int rate : RATES) {
+                for (int wpm : SPEEDS) {
+                    assertEquals(text, decode(text, rate, wpm, Sound.DEFAULT_FREQUENCY, 0, 1000), text + " at " + rate + " Hz, " + wpm + " wpm");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void startsWithDot() {
+        for (int rate : RATES) {
+            for (int wpm : SPEEDS) {
+                assertEquals("PARIS PARIS", decode("PARIS PARIS", rate, wpm, Sound.DEFAULT_FREQUENCY, 0, 1000));
+            }
+        }
+    }
+
+    @Test
+    public void randomGroupsInNoise() {
+        String text = CheckerTest.text(new Random(1), 300).trim();
+        for (int rate : RATES) {
+            assertEquals(text, decode(text, rate, 25, 700, 1000, 1000));
+        }
+    }
+
+    @Test
+    public void searchesPitch() {
+        assertEquals("TEST TEST", decode("TEST TEST", 8000, 20, 0, 500, 1000));
+    }
+
+    @Test
+    public void littleOrNoSilenceBefore() {
+        for (int rate : RATES) {
+            for (int lead : new int[]{0, 20}) {
+                assertEquals("TEST", decode("TEST", rate, 20, Sound.DEFAULT_FREQUENCY, 300, lead));
+                assertEquals("PARIS", decode("PARIS", rate, 20, Sound.DEFAULT_FREQUENCY, 300, lead));
+            }
+        }
+    }
+
+    @Test
+    public void noiseAlone() {
+        for (int rate : RATES) {
+            assertEquals("", decode("", rate, 20, Sound.DEFAULT_FREQUENCY, 1000, 10000));
+        }
+    }
+
+    /**
+     * Renders text after silence and decodes it
+     *
+     * @param frequency = pitch of the tone, 0 to let the decoder search it
+     * @param noise = amplitude of white noise in 16 bit samples
+     * @param leadMillis = silence before the text
+     */
+    private static String decode(String text, int rate, int wpm, double frequency, int noise, int leadMillis) {
+        Codebook codebook = Codebook.getDefault();
+        Sound sound = new Sound(rate, frequency > 0 ? frequency : 650);
+        WaveformCache cache = new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int lead = rate * leadMillis / 1000 * 2;
+        out.write(new byte[lead], 0, lead);
+        for (char c : text.toCharArray()) {
+            byte[] pcm = cache.get(sound, wpm, codebook.encode(c));
+            out.write(pcm, 0, pcm.length);
+        }
+        byte[] pcm = out.toByteArray();
+        Random random = new Random(2);
+        for (int i = 0; i < pcm.length; i += 2) {
+            int x = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8)) + (int) (random.nextGaussian() * noise);
+            x = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, x));
+            pcm[i] = (byte) x;
+            pcm[i + 1] = (byte) (x >> 8);
+        }
+        StringBuilder sb = new StringBuilder();
+        Decoder decoder = new Decoder(codebook, rate, frequency, sb::appendCodePoint);
+        int half = pcm.length / 4 * 2;
+        decoder.process(pcm, 0, half); // blocks of any size
+        decoder.process(pcm, half, pcm.length - half);
+        decoder.flush();
+        return sb.toString().trim();
+    }
+}
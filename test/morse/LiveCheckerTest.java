@@ -0,0 +1,121 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LiveChecker against a plain full table of edit distance, with user
+ * characters typed one by one while characters are played
+ *
+ * @author Matus Namesny
+ */
+public class LiveCheckerTest {
+
+    @Test
+    public void extraCharactersInTheMiddle() {
+        for (int extra : new int[]{16, 17, 20, 50, 200}) {
+            String played = CheckerTest.text(new Random(extra), 1000);
+            assertLive(played, played.substring(0, 500) + CheckerTest.junk(new Random(-extra), extra) + played.substring(500, 900));
+        }
+    }
+
+    @Test
+    public void chatterBeforeCopy() {
+        String played = CheckerTest.text(new Random(3), 1000);
+        assertLive(played, CheckerTest.junk(new Random(4), 40) + played.substring(0, 800));
+    }
+
+    @Test
+    public void droppedCharacters() {
+        String played = CheckerTest.text(new Random(5), 1000);
+        assertLive(played, played.substring(0, 300) + played.substring(400, 900));
+    }
+
+    @Test
+    public void scatteredMistakes() {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            String played = CheckerTest.text(random, 700);
+            assertLive(played, CheckerTest.copy(random, played, 0.08));
+        }
+    }
+
+    @Test
+    public void editsInTheMiddle() {
+        Random random = new Random(7);
+        String played = CheckerTest.text(random, 600);
+        StringBuilder user = new StringBuilder(CheckerTest.copy(random, played, 0.05));
+        LiveChecker live = new LiveChecker();
+        live.played(played);
+        live.insert(0, user);
+        for (int k = 0; k < 50; k++) {
+            int offset = random.nextInt(user.length());
+            if (random.nextBoolean()) {
+                String text = CheckerTest.junk(random, 1 + random.nextInt(30));
+                user.insert(offset, text);
+                live.insert(offset, text);
+            } else {
+                int length = Math.min(user.length() - offset, 1 + random.nextInt(30));
+                user.delete(offset, offset + length);
+                live.remove(offset, length);
+            }
+            assertEquals(distance(played, user.toString()), live.getDistance());
+        }
+    }
+
+    @Test
+    public void extraWhiteSpaceIsFree() {
+        LiveChecker live = new LiveChecker();
+        live.played("PARIS PARIS");
+        live.insert(0, "  paris   par");
+        assertEquals(0, live.getDistance());
+        assertEquals(9, live.getMatched());
+    }
+
+    /**
+     * Plays the characters in steps while the user types and checks the
+     * distance after every step
+     */
+    private static void assertLive(String played, String user) {
+        LiveChecker live = new LiveChecker();
+        int p = 0;
+        for (int j = 0; j < user.length(); j++) {
+            if (j % 3 == 0 && p < played.length()) {
+                p = Math.min(played.length(), p + 4);
+                live.played(played.substring(0, p));
+            }
+            live.insert(j, user.substring(j, j + 1));
+        }
+        live.played(played);
+        assertEquals(distance(played, user), live.getDistance());
+    }
+
+    /**
+     * Edit distance of the user text against the closest prefix of the
+     * played characters
+     */
+    private static int distance(String played, String user) {
+        int[] prev = new int[played.length() + 1];
+        int[] cur = new int[played.length() + 1];
+        for (int i = 0; i <= played.length(); i++) {
+            prev[i] = i;
+        }
+        for (int j = 1; j <= user.length(); j++) {
+            cur[0] = j;
+            for (int i = 1; i <= played.length(); i++) {
+                cur[i] = Math.min(Math.min(prev[i], cur[i - 1]) + 1,
+                        prev[i - 1] + (played.charAt(i - 1) == user.charAt(j - 1) ? 0 : 1));
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int d : prev) {
+            best = Math.min(best, d);
+        }
+        return best;
+    }
+}
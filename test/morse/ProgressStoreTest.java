@@ -0,0 +1,136 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Log and index of ProgressStore, also after a crash in the middle of a
+ * write
+ *
+ * @author Matus Namesny
+ */
+public class ProgressStoreTest {
+
+    private static final String[] PLAYED = {"PARIS PARIS", "CQ CQ DE OK1RR", "THE QUICK BROWN FOX"};
+    private static final String[] COPIED = {"PARIS PARIS", "CQ CQ DE OKRR", "THE QUICK BRXWN FOX"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void totalsAfterReopening() throws Exception {
+        File store = dir.resolve("store").toFile();
+        long[] ends = addAll(store);
+        for (int k = 0; k < 2; k++) { // with the index, then from the log alone
+            ProgressStore progress = ProgressStore.open(store);
+            assertTotals(progress, 3);
+            assertEquals(ends[2], new File(store, "sessions.log").length());
+            new File(store, "sessions.idx").delete();
+        }
+    }
+
+    @Test
+    public void tornLastRecord() throws Exception {
+        File store = dir.resolve("store").toFile();
+        long[] ends = addAll(store);
+        File log = new File(store, "sessions.log");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(ends[2] - 5);
+        }
+        ProgressStore progress = ProgressStore.open(store);
+        assertTotals(progress, 2);
+        assertEquals(ends[1], log.length());
+
+        progress.add(play(2), Checker.check(PLAYED[2], COPIED[2]));
+        progress.flush();
+        assertTotals(ProgressStore.open(store), 3);
+    }
+
+    @Test
+    public void brokenLastRecord() throws Exception {
+        File store = dir.resolve("store").toFile();
+        long[] ends = addAll(store);
+        File log = new File(store, "sessions.log");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(ends[2] - 3);
+            int b = file.read();
+            file.seek(ends[2] - 3);
+            file.write(b ^ 0x55);
+        }
+        new File(store, "sessions.idx").delete(); // the index covered the record
+        ProgressStore progress = ProgressStore.open(store);
+        assertTotals(progress, 2);
+        assertEquals(ends[1], log.length());
+    }
+
+    /**
+     * Adds the sessions one by one
+     *
+     * @return length of the log after each of them
+     */
+    private long[] addAll(File store) throws Exception {
+        ProgressStore progress = ProgressStore.open(store);
+        long[] ends = new long[PLAYED.length];
+        for (int k = 0; k < PLAYED.length; k++) {
+            progress.add(play(k), Checker.check(PLAYED[k], COPIED[k]));
+            progress.flush();
+            ends[k] = new File(store, "sessions.log").length();
+        }
+        assertTotals(progress, PLAYED.length);
+        return ends;
+    }
+
+    /**
+     * Totals of the first sessions
+     */
+    private static void assertTotals(ProgressStore progress, int sessions) {
+        long characters = 0;
+        long mistakes = 0;
+        for (int k = 0; k < sessions; k++) {
+            Checker.Result result = Checker.check(PLAYED[k], COPIED[k]);
+            characters += result.getLength();
+            mistakes += result.getMistakes().size();
+        }
+        assertEquals(sessions, progress.getSessions());
+        assertEquals(characters, progress.getCharacters());
+        assertEquals(mistakes, progress.getMistakes());
+    }
+
+    /**
+     * Plays a session from a file as fast as it can
+     */
+    private Session play(int k) throws IOException {
+        File text = Files.write(dir.resolve("text" + k + ".txt"), PLAYED[k].getBytes(StandardCharsets.UTF_8)).toFile();
+        Session session = new Session(Codebook.getDefault(), new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES));
+        session.setSource(new Source(text));
+        session.setSound(new Sound(8000, Sound.DEFAULT_FREQUENCY));
+        session.setLookahead(0); // read on the playing thread, nothing to wait for
+        session.start(new Output() {
+            @Override
+            public void start(AudioEngine.Feed feed) {
+                while (feed.next() != null) {
+                }
+                feed.done();
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public long getUnderruns() {
+                return 0;
+            }
+        });
+        assertEquals(PLAYED[k], session.getTranscript().toString().trim());
+        return session;
+    }
+}
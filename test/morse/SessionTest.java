@@ -0,0 +1,42 @@
+package morse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Session which cannot start playing
+ *
+ * @author Matus Namesny
+ */
+public class SessionTest {
+
+    @Test
+    public void outputFailsToStart() {
+        Session session = new Session(Codebook.getDefault(), new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES));
+        session.setSource(new Source(new Boolean[]{true, false, false}, 1));
+        session.setSound(new Sound(8000, Sound.DEFAULT_FREQUENCY));
+        int active = Metrics.getDefault().getActiveSessions();
+        Output broken = new Output() {
+            @Override
+            public void start(AudioEngine.Feed feed) {
+                throw new IllegalStateException("Line unavailable");
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public long getUnderruns() {
+                return 0;
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> session.start(broken));
+        assertFalse(session.isPlaying());
+        assertEquals(active, Metrics.getDefault().getActiveSessions());
+        assertThrows(IllegalStateException.class, () -> session.start(broken)); // not "already playing"
+    }
+}